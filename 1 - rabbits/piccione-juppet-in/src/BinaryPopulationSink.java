@@ -0,0 +1,42 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Population sink that writes fixed-size big-endian records:
+ * the tick as a long, then the number of rabbits and of grass as ints.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class BinaryPopulationSink implements PopulationSink {
+
+	private final DataOutputStream output;
+
+	public BinaryPopulationSink(String fileName, boolean append) {
+		try {
+			output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName, append), 1 << 16));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void record(long tick, int rabbitNb, int grassNb) {
+		try {
+			output.writeLong(tick);
+			output.writeInt(rabbitNb);
+			output.writeInt(grassNb);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void close() {
+		try {
+			output.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,178 @@
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Sparse directory of the chunks of a chunked layer: an open addressing hash
+ * table from the index of a chunk, chunkY * chunksX + chunkX, to the chunk.
+ * Only the allocated chunks have an entry, so the directory grows with them
+ * rather than with the area: a world of 100000 x 100000 cells, 39M chunks of
+ * 16 x 16 cells, with 1M chunks allocated has a table of 4M entries of 8 bytes
+ * after a rebuild, instead of a directory of 39M references.
+ *
+ * The tiles of a TiledStepper allocate and release chunks in parallel, but a
+ * chunk is only used by the thread of its tile, or after the tiles are
+ * joined. So get is lock free and reads the current table, while put, which
+ * changes it, is synchronized. A released chunk leaves a tombstone, so that
+ * put never moves the entries that the other threads are looking up; when
+ * the table is half full, it is rebuilt without the tombstones and published
+ * at once.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class ChunkDirectory<C> {
+
+	private static final int EMPTY = -1;
+	private static final int TOMBSTONE = -2;
+	private static final int MIN_CAPACITY = 64;
+
+	private static final class Table {
+		final int[] keys;
+		final Object[] chunks;
+		final int mask;
+
+		Table(int capacity) {
+			keys = new int[capacity];
+			chunks = new Object[capacity];
+			mask = capacity - 1;
+			Arrays.fill(keys, EMPTY);
+		}
+	}
+
+	private final int chunksX;
+	private volatile Table table = new Table(MIN_CAPACITY);
+	private int chunkNb = 0; // Guarded by this
+	private int usedNb = 0; // Entries with a chunk or a tombstone, guarded by this
+
+	public ChunkDirectory(int chunksX, int chunksY) {
+		if((long)chunksX * chunksY > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Too many chunks: " + chunksX + " x " + chunksY);
+		this.chunksX = chunksX;
+	}
+
+	/**
+	 * Returns the chunk, null if it is not allocated
+	 */
+	@SuppressWarnings("unchecked")
+	public C get(int chunkX, int chunkY) {
+		int key = chunkY * chunksX + chunkX;
+		Table current = table;
+		for(int i = hash(key) & current.mask;; i = (i + 1) & current.mask) {
+			int k = current.keys[i];
+			if(k == key)
+				return (C)current.chunks[i];
+			if(k == EMPTY)
+				return null;
+		}
+	}
+
+	/**
+	 * Sets the chunk, null to release it
+	 */
+	public void put(int chunkX, int chunkY, C chunk) {
+		put(chunkY * chunksX + chunkX, chunk);
+	}
+
+	public synchronized void put(int chunkIndex, C chunk) {
+		Table current = table;
+		int free = -1;
+		int i = hash(chunkIndex) & current.mask;
+		for(;; i = (i + 1) & current.mask) {
+			int k = current.keys[i];
+			if(k == chunkIndex)
+				break;
+			if(k == TOMBSTONE && free == -1)
+				free = i;
+			if(k == EMPTY)
+				break;
+		}
+
+		if(current.keys[i] == chunkIndex) {
+			if(chunk == null) {
+				// The key stays until the next rebuild, as a tombstone
+				current.chunks[i] = null;
+				current.keys[i] = TOMBSTONE;
+				--chunkNb;
+			}else {
+				current.chunks[i] = chunk;
+			}
+			return;
+		}
+		if(chunk == null)
+			return;
+
+		if(free == -1) {
+			if(2 * (usedNb + 1) > current.keys.length) {
+				rebuild();
+				put(chunkIndex, chunk);
+				return;
+			}
+			free = i;
+			++usedNb;
+		}
+		current.chunks[free] = chunk;
+		current.keys[free] = chunkIndex;
+		++chunkNb;
+	}
+
+	/**
+	 * Returns the number of chunks currently allocated
+	 */
+	public synchronized int getChunkNb() {
+		return chunkNb;
+	}
+
+	/**
+	 * Calls the action with each allocated chunk and its index, by increasing
+	 * index. Must not run while the chunks are changed.
+	 */
+	public synchronized void forEach(ObjIntConsumer<C> action) {
+		Table current = table;
+		int[] indexes = new int[chunkNb];
+		int n = 0;
+		for(int key : current.keys) {
+			if(key >= 0)
+				indexes[n++] = key;
+		}
+		Arrays.sort(indexes);
+		for(int chunkIndex : indexes)
+			action.accept(get(chunkIndex % chunksX, chunkIndex / chunksX), chunkIndex);
+	}
+
+	/**
+	 * Releases all the chunks
+	 */
+	public synchronized void clear() {
+		table = new Table(MIN_CAPACITY);
+		chunkNb = 0;
+		usedNb = 0;
+	}
+
+	/**
+	 * Publishes a table with the allocated chunks only, at most a quarter full
+	 */
+	private void rebuild() {
+		Table current = table;
+		int capacity = MIN_CAPACITY;
+		while(capacity < 4 * (chunkNb + 1))
+			capacity <<= 1;
+
+		Table rebuilt = new Table(capacity);
+		for(int j = 0; j < current.keys.length; ++j) {
+			int key = current.keys[j];
+			if(key < 0)
+				continue;
+			int i = hash(key) & rebuilt.mask;
+			while(rebuilt.keys[i] != EMPTY)
+				i = (i + 1) & rebuilt.mask;
+			rebuilt.keys[i] = key;
+			rebuilt.chunks[i] = current.chunks[j];
+		}
+		usedNb = chunkNb;
+		table = rebuilt;
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
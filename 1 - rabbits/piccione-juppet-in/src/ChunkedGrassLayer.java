@@ -0,0 +1,176 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class that stores the grass of a very large and sparse world in chunks of
+ * CHUNK_SIZE x CHUNK_SIZE cells. A chunk is a bitset (one bit per cell, its
+ * last word holding its grass count) allocated the first time grass grows on
+ * it and released when its last grass is eaten, so the memory grows with the
+ * number of chunks with grass rather than with the area. The chunks are
+ * found through a sparse ChunkDirectory, which also only grows where there
+ * was grass.
+ *
+ * There is no free cell index: random free cells are found by rejection
+ * sampling, which is fast as long as the world is sparse.
+ *
+ * The tiles of a TiledStepper are aligned on chunks and at least two chunks
+ * wide, so a chunk is only changed by one thread at a time and the unindexed
+ * operations are the normal ones. The grass count is a LongAdder so that it
+ * is always up to date.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class ChunkedGrassLayer implements GrassLayer {
+
+	public static final int CHUNK_SHIFT = 4;
+	public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	private static final int COUNT_WORD = CHUNK_SIZE * CHUNK_SIZE / 64;
+
+	private final int sizeX;
+	private final int sizeY;
+	private final ChunkDirectory<long[]> chunks;
+	private final LongAdder grassNb = new LongAdder();
+
+	public ChunkedGrassLayer(int sizeX, int sizeY) {
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		this.chunks = new ChunkDirectory<>((sizeX + CHUNK_MASK) >> CHUNK_SHIFT, (sizeY + CHUNK_MASK) >> CHUNK_SHIFT);
+	}
+
+	public int getSizeX() {
+		return sizeX;
+	}
+
+	public int getSizeY() {
+		return sizeY;
+	}
+
+	public int getGrassNb() {
+		return grassNb.intValue();
+	}
+
+	/**
+	 * Returns the number of chunks currently allocated
+	 */
+	public int getChunkNb() {
+		return chunks.getChunkNb();
+	}
+
+	public int getValueAt(int x, int y) {
+		return isGrassAt(x, y) ? 1 : 0;
+	}
+
+	public boolean isGrassAt(int x, int y) {
+		long[] chunk = chunks.get(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT);
+		if(chunk == null)
+			return false;
+
+		int bit = bitOf(x, y);
+		return (chunk[bit >> 6] & (1L << bit)) != 0;
+	}
+
+	public long getRowBits(int x, int y, int width) {
+		long bits = 0;
+		int rowBit = (y & CHUNK_MASK) << CHUNK_SHIFT;
+		for(int filled = 0; filled < width;) {
+			int column = (x + filled) % sizeX;
+
+			// Take the bits up to the end of the chunk row, the row or the width
+			int n = Math.min(width - filled, Math.min(sizeX - column, CHUNK_SIZE - (column & CHUNK_MASK)));
+			long[] chunk = chunks.get(column >> CHUNK_SHIFT, y >> CHUNK_SHIFT);
+			if(chunk != null) {
+				int bit = rowBit | (column & CHUNK_MASK);
+				long part = chunk[bit >> 6] >>> bit;
+				if(n < 64)
+					part &= (1L << n) - 1;
+				bits |= part << filled;
+			}
+			filled += n;
+		}
+		return bits;
+	}
+
+	public long getRandomFreeCell(SplittableRandom random) {
+		if(grassNb.sum() >= (long)sizeX * sizeY)
+			return -1;
+
+		int x, y;
+		do {
+			x = random.nextInt(sizeX);
+			y = random.nextInt(sizeY);
+		}while(isGrassAt(x, y));
+		return (long)y * sizeX + x;
+	}
+
+	public boolean putGrassAt(int x, int y) {
+		long[] chunk = chunks.get(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT);
+		if(chunk == null) {
+			chunk = new long[COUNT_WORD + 1];
+			chunks.put(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT, chunk);
+		}
+
+		int bit = bitOf(x, y);
+		long mask = 1L << bit;
+		if((chunk[bit >> 6] & mask) != 0)
+			return false;
+
+		chunk[bit >> 6] |= mask;
+		++chunk[COUNT_WORD];
+		grassNb.increment();
+		return true;
+	}
+
+	public boolean removeGrassAt(int x, int y) {
+		long[] chunk = chunks.get(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT);
+		if(chunk == null)
+			return false;
+
+		int bit = bitOf(x, y);
+		long mask = 1L << bit;
+		if((chunk[bit >> 6] & mask) == 0)
+			return false;
+
+		chunk[bit >> 6] &= ~mask;
+		if(--chunk[COUNT_WORD] == 0)
+			chunks.put(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT, null); // Release the empty chunk
+		grassNb.decrement();
+		return true;
+	}
+
+	public boolean removeGrassUnindexed(int x, int y) {
+		return removeGrassAt(x, y);
+	}
+
+	public void syncFreeCell(int x, int y) {
+		// Nothing to do, there is no free cell index
+	}
+
+	/**
+	 * Writes the number of allocated chunks, then the index and the words
+	 * of each of them
+	 */
+	public void writeTo(MappedFile out) {
+		out.putInt(getChunkNb());
+		chunks.forEach((chunk, chunkIndex) -> {
+			out.putInt(chunkIndex);
+			out.putLongs(chunk, 0, chunk.length);
+		});
+	}
+
+	public void readFrom(MappedFile in) {
+		chunks.clear();
+		grassNb.reset();
+		int chunkNb = in.getInt();
+		for(int i = 0; i < chunkNb; ++i) {
+			long[] chunk = new long[COUNT_WORD + 1];
+			chunks.put(in.getInt(), chunk);
+			in.getLongs(chunk, 0, chunk.length);
+			grassNb.add(chunk[COUNT_WORD]);
+		}
+	}
+
+	private static int bitOf(int x, int y) {
+		return (y & CHUNK_MASK) << CHUNK_SHIFT | (x & CHUNK_MASK);
+	}
+}
@@ -0,0 +1,120 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class that maps the cells of a very large and sparse world to the slot of
+ * their rabbit, in chunks of CHUNK_SIZE x CHUNK_SIZE cells. A chunk holds
+ * slot + 1 for each cell (0 for a free cell, so a new chunk is empty) and,
+ * in its last entry, its number of rabbits. Chunks are allocated when the
+ * first rabbit enters them and released when the last one leaves, so the
+ * memory grows with the occupied chunks rather than with the area. As in
+ * the ChunkedGrassLayer, the chunks are found through a sparse ChunkDirectory.
+ *
+ * Like the ChunkedGrassLayer, it has no free cell index and relies on tiles
+ * aligned on chunks for parallel stepping.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class ChunkedRabbitCells implements RabbitCells {
+
+	public static final int CHUNK_SHIFT = ChunkedGrassLayer.CHUNK_SHIFT;
+	public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	private static final int COUNT_INDEX = CHUNK_SIZE * CHUNK_SIZE;
+
+	private final int sizeX;
+	private final int sizeY;
+	private final ChunkDirectory<int[]> chunks;
+	private final LongAdder rabbitNb = new LongAdder();
+
+	public ChunkedRabbitCells(int sizeX, int sizeY) {
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		this.chunks = new ChunkDirectory<>((sizeX + CHUNK_MASK) >> CHUNK_SHIFT, (sizeY + CHUNK_MASK) >> CHUNK_SHIFT);
+	}
+
+	public int getSizeX() {
+		return sizeX;
+	}
+
+	public int getSizeY() {
+		return sizeY;
+	}
+
+	public int getSlotAt(int x, int y) {
+		int[] chunk = chunks.get(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT);
+		if(chunk == null)
+			return -1;
+		return chunk[cellOf(x, y)] - 1;
+	}
+
+	public void putSlotAt(int x, int y, int slot) {
+		int[] chunk = chunks.get(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT);
+		if(chunk == null) {
+			if(slot < 0)
+				return;
+			chunk = new int[COUNT_INDEX + 1];
+			chunks.put(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT, chunk);
+		}
+
+		int cell = cellOf(x, y);
+		boolean wasFree = chunk[cell] == 0;
+		chunk[cell] = slot + 1;
+		if(wasFree && slot >= 0) {
+			++chunk[COUNT_INDEX];
+			rabbitNb.increment();
+		} else if(!wasFree && slot < 0) {
+			if(--chunk[COUNT_INDEX] == 0)
+				chunks.put(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT, null); // Release the empty chunk
+			rabbitNb.decrement();
+		}
+	}
+
+	public void putSlotUnindexed(int x, int y, int slot) {
+		putSlotAt(x, y, slot);
+	}
+
+	public void syncFreeCell(int x, int y) {
+		// Nothing to do, there is no free cell index
+	}
+
+	public long getRandomFreeCell(SplittableRandom random) {
+		if(rabbitNb.sum() >= (long)sizeX * sizeY)
+			return -1;
+
+		int x, y;
+		do {
+			x = random.nextInt(sizeX);
+			y = random.nextInt(sizeY);
+		}while(getSlotAt(x, y) >= 0);
+		return (long)y * sizeX + x;
+	}
+
+	/**
+	 * Writes the number of allocated chunks, then the index and the entries
+	 * of each of them
+	 */
+	public void writeTo(MappedFile out) {
+		out.putInt(chunks.getChunkNb());
+		chunks.forEach((chunk, chunkIndex) -> {
+			out.putInt(chunkIndex);
+			out.putInts(chunk, 0, chunk.length);
+		});
+	}
+
+	public void readFrom(MappedFile in) {
+		chunks.clear();
+		rabbitNb.reset();
+		int chunkNb = in.getInt();
+		for(int i = 0; i < chunkNb; ++i) {
+			int[] chunk = new int[COUNT_INDEX + 1];
+			chunks.put(in.getInt(), chunk);
+			in.getInts(chunk, 0, chunk.length);
+			rabbitNb.add(chunk[COUNT_INDEX]);
+		}
+	}
+
+	private static int cellOf(int x, int y) {
+		return (y & CHUNK_MASK) << CHUNK_SHIFT | (x & CHUNK_MASK);
+	}
+}
@@ -0,0 +1,47 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Population sink that writes one "tick,rabbits,grass" line per tick.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class CsvPopulationSink implements PopulationSink {
+
+	private final BufferedWriter writer;
+	private final StringBuilder line = new StringBuilder();
+
+	public CsvPopulationSink(String fileName, boolean append) {
+		try {
+			boolean writeHeader = !append || !new File(fileName).exists();
+			writer = new BufferedWriter(new FileWriter(fileName, append), 1 << 16);
+			if(writeHeader) {
+				writer.write("tick,rabbits,grass");
+				writer.newLine();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void record(long tick, int rabbitNb, int grassNb) {
+		line.setLength(0);
+		line.append(tick).append(',').append(rabbitNb).append(',').append(grassNb).append('\n');
+		try {
+			writer.append(line);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void close() {
+		try {
+			writer.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
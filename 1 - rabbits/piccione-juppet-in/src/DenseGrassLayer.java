@@ -0,0 +1,139 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.SplittableRandom;
+
+/**
+ * Class that stores the grass of the simulation space in a bitboard: one bit
+ * per cell, 1 if there is grass on it, each row starting on a new long.
+ * Reading or changing a cell does not allocate anything, and a run of up to
+ * 64 cells of a row is read with a couple of word operations.
+ * Bits are set and cleared atomically, since tiles stepped in parallel may
+ * change different cells of the same word.
+ * The cells without grass are also kept in a FreeCellIndex, so that new grass
+ * can be put on a random free cell in O(1).
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class DenseGrassLayer implements GrassLayer {
+
+	private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+	private final int sizeX;
+	private final int sizeY;
+	private final int wordsPerRow;
+	private final long[] words;
+	private final FreeCellIndex freeCells;
+
+	public DenseGrassLayer(int sizeX, int sizeY) {
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		this.wordsPerRow = (sizeX + 63) >>> 6;
+		this.words = new long[wordsPerRow * sizeY];
+		this.freeCells = new FreeCellIndex(sizeX * sizeY);
+	}
+
+	public int getSizeX() {
+		return sizeX;
+	}
+
+	public int getSizeY() {
+		return sizeY;
+	}
+
+	public int getGrassNb() {
+		return freeCells.getCellNb() - freeCells.getFreeNb();
+	}
+
+	public FreeCellIndex getFreeCells() {
+		return freeCells;
+	}
+
+	public int getValueAt(int x, int y) {
+		return (int)(words[y * wordsPerRow + (x >>> 6)] >>> x) & 1;
+	}
+
+	public boolean isGrassAt(int x, int y) {
+		return getValueAt(x, y) == 1;
+	}
+
+	public long getRowBits(int x, int y, int width) {
+		long bits = 0;
+		int rowStart = y * wordsPerRow;
+		for(int filled = 0; filled < width;) {
+			int column = (x + filled) % sizeX;
+
+			// Take the bits up to the end of the word, the row or the width
+			int n = Math.min(width - filled, Math.min(sizeX - column, 64 - (column & 63)));
+			long part = words[rowStart + (column >>> 6)] >>> column;
+			if(n < 64)
+				part &= (1L << n) - 1;
+			bits |= part << filled;
+			filled += n;
+		}
+		return bits;
+	}
+
+	public long getRandomFreeCell(SplittableRandom random) {
+		return freeCells.getRandomFreeCell(random);
+	}
+
+	public boolean putGrassAt(int x, int y) {
+		if(!setBit(x, y))
+			return false;
+
+		freeCells.markUsed(y * sizeX + x);
+		return true;
+	}
+
+	public boolean removeGrassAt(int x, int y) {
+		if(!clearBit(x, y))
+			return false;
+
+		freeCells.markFree(y * sizeX + x);
+		return true;
+	}
+
+	/**
+	 * Removes the grass of the cell without updating the free cell index,
+	 * which also holds the grass count
+	 */
+	public boolean removeGrassUnindexed(int x, int y) {
+		return clearBit(x, y);
+	}
+
+	public void syncFreeCell(int x, int y) {
+		int cell = y * sizeX + x;
+		if(isGrassAt(x, y))
+			freeCells.markUsed(cell);
+		else
+			freeCells.markFree(cell);
+	}
+
+	public void writeTo(MappedFile out) {
+		out.putLongs(words, 0, words.length);
+		freeCells.writeTo(out);
+	}
+
+	public void readFrom(MappedFile in) {
+		in.getLongs(words, 0, words.length);
+		freeCells.readFrom(in);
+	}
+
+	/**
+	 * @return true if the bit was 0
+	 */
+	private boolean setBit(int x, int y) {
+		long mask = 1L << x;
+		long previous = (long)WORDS.getAndBitwiseOr(words, y * wordsPerRow + (x >>> 6), mask);
+		return (previous & mask) == 0;
+	}
+
+	/**
+	 * @return true if the bit was 1
+	 */
+	private boolean clearBit(int x, int y) {
+		long mask = 1L << x;
+		long previous = (long)WORDS.getAndBitwiseAnd(words, y * wordsPerRow + (x >>> 6), ~mask);
+		return (previous & mask) != 0;
+	}
+}
@@ -0,0 +1,71 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Class that maps every cell of the space to the slot of its rabbit with one
+ * int per cell, and keeps the free cells in a FreeCellIndex.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class DenseRabbitCells implements RabbitCells {
+
+	private final int sizeX;
+	private final int sizeY;
+	private final int[] slotAt;
+	private final FreeCellIndex freeCells;
+
+	public DenseRabbitCells(int sizeX, int sizeY) {
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		this.slotAt = new int[sizeX * sizeY];
+		Arrays.fill(slotAt, -1);
+		this.freeCells = new FreeCellIndex(sizeX * sizeY);
+	}
+
+	public int getSizeX() {
+		return sizeX;
+	}
+
+	public int getSizeY() {
+		return sizeY;
+	}
+
+	public int getSlotAt(int x, int y) {
+		return slotAt[y * sizeX + x];
+	}
+
+	public void putSlotAt(int x, int y, int slot) {
+		int cell = y * sizeX + x;
+		slotAt[cell] = slot;
+		if(slot < 0)
+			freeCells.markFree(cell);
+		else
+			freeCells.markUsed(cell);
+	}
+
+	public void putSlotUnindexed(int x, int y, int slot) {
+		slotAt[y * sizeX + x] = slot;
+	}
+
+	public void syncFreeCell(int x, int y) {
+		int cell = y * sizeX + x;
+		if(slotAt[cell] < 0)
+			freeCells.markFree(cell);
+		else
+			freeCells.markUsed(cell);
+	}
+
+	public long getRandomFreeCell(SplittableRandom random) {
+		return freeCells.getRandomFreeCell(random);
+	}
+
+	public void writeTo(MappedFile out) {
+		out.putInts(slotAt, 0, slotAt.length);
+		freeCells.writeTo(out);
+	}
+
+	public void readFrom(MappedFile in) {
+		in.getInts(slotAt, 0, slotAt.length);
+		freeCells.readFrom(in);
+	}
+}
@@ -0,0 +1,137 @@
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Class that paints the simulation on its own thread, at most frameRate
+ * times per second, so that the simulation does not wait for the display.
+ *
+ * The simulation and the renderer each own a SimulationSnapshot and exchange
+ * it with a third, pending one: publish captures the simulation in the
+ * snapshot of the simulation thread and swaps it with the pending one, the
+ * renderer swaps its snapshot with the pending one when it is newer. The
+ * simulation thread never waits for the renderer, and no thread reads a
+ * snapshot being written.
+ * publish only captures once per frame, so the cost of the snapshots does
+ * not grow with the speed of the simulation.
+ *
+ * Swing can also repaint the displays on its own thread. The displays thus
+ * draw in paint, which keeps the renderer from swapping its snapshot (and so
+ * the simulation from capturing into it) until they are done, and read the
+ * snapshot once per drawing: a frame always shows a single snapshot. Probes
+ * read the snapshot through read, under the same lock.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class DisplayRenderer implements Runnable {
+
+	private final AtomicReference<SimulationSnapshot> pending;
+	private SimulationSnapshot back;	// Owned by the simulation thread
+	private volatile SimulationSnapshot front;	// Owned by the render thread
+	private final Object frontLock = new Object();	// Held to draw front, or to swap it
+
+	private final long framePeriod;
+	private final Runnable painter;
+	private long nextPublishTime = 0;
+
+	private Thread thread;
+	private volatile boolean running;
+
+	/**
+	 * @param painter called on the render thread for each new snapshot, which
+	 * it reads through getSnapshot
+	 */
+	public DisplayRenderer(int sizeX, int sizeY, int frameRate, Runnable painter) {
+		pending = new AtomicReference<>(new SimulationSnapshot(sizeX, sizeY));
+		back = new SimulationSnapshot(sizeX, sizeY);
+		front = new SimulationSnapshot(sizeX, sizeY);
+		framePeriod = 1000000000L / Math.max(1, frameRate);
+		this.painter = painter;
+	}
+
+	/**
+	 * Returns the snapshot being painted. Out of the render thread, it must
+	 * be read in paint to stay the same while it is used.
+	 */
+	public SimulationSnapshot getSnapshot() {
+		return front;
+	}
+
+	/**
+	 * Runs the drawing while the snapshot being painted cannot be swapped
+	 */
+	public void paint(Runnable drawing) {
+		synchronized(frontLock) {
+			drawing.run();
+		}
+	}
+
+	/**
+	 * Returns what the reading finds in the snapshot being painted, which
+	 * cannot be swapped meanwhile
+	 */
+	public <T> T read(Function<SimulationSnapshot, T> reading) {
+		synchronized(frontLock) {
+			return reading.apply(front);
+		}
+	}
+
+	/**
+	 * Publishes the state of the simulation if a frame is due.
+	 * Must be called from the simulation thread only.
+	 * @param force publish even if no frame is due, e.g. at the end of a run
+	 */
+	public void publish(RabbitsGrassSimulation simulation, boolean force) {
+		long now = System.nanoTime();
+		if(!force && now - nextPublishTime < 0)
+			return;
+
+		back.capture(simulation);
+		back = pending.getAndSet(back);
+		nextPublishTime = now + framePeriod;
+	}
+
+	public void start() {
+		running = true;
+		thread = new Thread(this, "Rabbit grass display");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the render thread and waits for its last frame
+	 */
+	public void stop() {
+		running = false;
+		if(thread == null)
+			return;
+
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+	}
+
+	public void run() {
+		while(running) {
+			long frameStart = System.nanoTime();
+			if(pending.get().getTick() > front.getTick()) {
+				synchronized(frontLock) {
+					front = pending.getAndSet(front);
+				}
+				painter.run();
+			}
+
+			long sleepTime = framePeriod - (System.nanoTime() - frameStart);
+			if(sleepTime > 0) {
+				try {
+					Thread.sleep(sleepTime / 1000000, (int)(sleepTime % 1000000));
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,114 @@
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Runner that replicates one setting of the rabbits grass simulation with
+ * many seeds and exports the per-tick EnsembleStatistics of the populations,
+ * e.g. to draw confidence bands.
+ *
+ * The replicates are run in lockstep by batches: the simulations of a batch
+ * are stepped in parallel for a few ticks, then their populations are folded
+ * into the statistics in replicate order, so the result only depends on the
+ * seed. Only the simulations of the current batch are kept in memory.
+ *
+ * The ensemble is described by a properties file:
+ *   replicates=number of runs
+ *   ticks=number of ticks of each run
+ *   seed=seed from which the seeds of the runs are drawn
+ *   threads=number of threads (0 for all the cores)
+ *   batch=number of runs in memory at the same time (0 for 8 per thread)
+ *   output=file of the time series, binary if it ends with ".bin", CSV otherwise
+ * and one line per parameter that does not keep its default value
+ * (see RabbitsGrassSimulationParameters.NAMES), e.g. GridSize=40.
+ *
+ * Usage: java EnsembleRunner ensemble.properties
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class EnsembleRunner {
+
+	private static final int LOCKSTEP_TICKS = 64;
+
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		if(args.length != 1) {
+			System.err.println("Usage: java EnsembleRunner <ensemble.properties>");
+			System.exit(1);
+		}
+
+		Properties spec = new Properties();
+		try (Reader reader = new FileReader(args[0])) {
+			spec.load(reader);
+		}
+
+		int replicates = Integer.parseInt(spec.getProperty("replicates", "100"));
+		int ticks = Integer.parseInt(spec.getProperty("ticks", "1000"));
+		long seed = Long.parseLong(spec.getProperty("seed", "0"));
+		int threads = Integer.parseInt(spec.getProperty("threads", "0"));
+		int batch = Integer.parseInt(spec.getProperty("batch", "0"));
+		String output = spec.getProperty("output", "ensemble.csv");
+
+		RabbitsGrassSimulationParameters parameters = new RabbitsGrassSimulationParameters();
+		for(String name : RabbitsGrassSimulationParameters.NAMES) {
+			String value = spec.getProperty(name);
+			if(value != null)
+				parameters.set(name, Integer.parseInt(value.trim()));
+		}
+
+		if(threads <= 0)
+			threads = Runtime.getRuntime().availableProcessors();
+		if(batch <= 0)
+			batch = 8 * threads;
+		System.out.println(replicates + " replicates of " + ticks + " ticks on " + threads + " threads");
+
+		long startTime = System.currentTimeMillis();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			EnsembleStatistics statistics = run(parameters, replicates, ticks, seed, batch, pool);
+			statistics.write(output);
+		} finally {
+			pool.shutdownNow();
+		}
+		System.out.println("Done in " + (System.currentTimeMillis() - startTime) + " ms");
+	}
+
+	static EnsembleStatistics run(RabbitsGrassSimulationParameters parameters, int replicates, int ticks, long seed,
+			int batch, ForkJoinPool pool) throws InterruptedException, ExecutionException {
+		EnsembleStatistics statistics = new EnsembleStatistics(ticks);
+		SplittableRandom seeds = new SplittableRandom(seed);
+
+		for(int first = 0; first < replicates; first += batch) {
+			int batchSize = Math.min(batch, replicates - first);
+			RabbitsGrassSimulation[] simulations = new RabbitsGrassSimulation[batchSize];
+			for(int i = 0; i < batchSize; ++i) {
+				RabbitsGrassSimulationParameters replicate = new RabbitsGrassSimulationParameters(parameters);
+				replicate.setSeed(seeds.nextLong());
+				simulations[i] = new RabbitsGrassSimulation(replicate);
+			}
+
+			// Populations of the last ticks: rabbits then grass, for each replicate
+			int[][] populations = new int[batchSize][2 * LOCKSTEP_TICKS];
+			for(int from = 0; from < ticks; from += LOCKSTEP_TICKS) {
+				int tickNb = Math.min(LOCKSTEP_TICKS, ticks - from);
+				pool.submit(() -> IntStream.range(0, batchSize).parallel().forEach(i -> {
+					for(int t = 0; t < tickNb; ++t) {
+						simulations[i].step();
+						populations[i][2 * t] = simulations[i].getRabbitNb();
+						populations[i][2 * t + 1] = simulations[i].getGrassNb();
+					}
+				})).get();
+
+				for(int t = 0; t < tickNb; ++t) {
+					for(int i = 0; i < batchSize; ++i)
+						statistics.add(from + t, populations[i][2 * t], populations[i][2 * t + 1]);
+				}
+			}
+		}
+		return statistics;
+	}
+}
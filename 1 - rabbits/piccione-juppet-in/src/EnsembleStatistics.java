@@ -0,0 +1,175 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+
+/**
+ * Class that folds the populations of many replicated runs into per-tick
+ * statistics: mean and variance (Welford's online algorithm) and P-square
+ * estimates of QUANTILES, for the rabbits and the grass. The replicates are
+ * not stored, so the memory only grows with the number of ticks.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class EnsembleStatistics {
+
+	public static final double[] QUANTILES = { 0.05, 0.5, 0.95 };
+
+	private final int tickNb;
+	private final int[] counts;
+	private final double[] rabbitMeans;
+	private final double[] rabbitM2s;
+	private final double[] grassMeans;
+	private final double[] grassM2s;
+	private final P2Quantile[][] rabbitQuantiles;
+	private final P2Quantile[][] grassQuantiles;
+
+	public EnsembleStatistics(int tickNb) {
+		this.tickNb = tickNb;
+		counts = new int[tickNb];
+		rabbitMeans = new double[tickNb];
+		rabbitM2s = new double[tickNb];
+		grassMeans = new double[tickNb];
+		grassM2s = new double[tickNb];
+		rabbitQuantiles = new P2Quantile[tickNb][QUANTILES.length];
+		grassQuantiles = new P2Quantile[tickNb][QUANTILES.length];
+		for(int tick = 0; tick < tickNb; ++tick) {
+			for(int q = 0; q < QUANTILES.length; ++q) {
+				rabbitQuantiles[tick][q] = new P2Quantile(QUANTILES[q]);
+				grassQuantiles[tick][q] = new P2Quantile(QUANTILES[q]);
+			}
+		}
+	}
+
+	public int getTickNb() {
+		return tickNb;
+	}
+
+	/**
+	 * Adds the populations of one replicate at a tick, between 0 and tickNb - 1
+	 */
+	public void add(int tick, int rabbitNb, int grassNb) {
+		int count = ++counts[tick];
+
+		double delta = rabbitNb - rabbitMeans[tick];
+		rabbitMeans[tick] += delta / count;
+		rabbitM2s[tick] += delta * (rabbitNb - rabbitMeans[tick]);
+
+		delta = grassNb - grassMeans[tick];
+		grassMeans[tick] += delta / count;
+		grassM2s[tick] += delta * (grassNb - grassMeans[tick]);
+
+		for(int q = 0; q < QUANTILES.length; ++q) {
+			rabbitQuantiles[tick][q].add(rabbitNb);
+			grassQuantiles[tick][q].add(grassNb);
+		}
+	}
+
+	public int getCount(int tick) {
+		return counts[tick];
+	}
+
+	public double getRabbitMean(int tick) {
+		return rabbitMeans[tick];
+	}
+
+	public double getRabbitVariance(int tick) {
+		return counts[tick] > 1 ? rabbitM2s[tick] / (counts[tick] - 1) : 0;
+	}
+
+	public double getRabbitQuantile(int tick, int quantileIndex) {
+		return rabbitQuantiles[tick][quantileIndex].getQuantile();
+	}
+
+	public double getGrassMean(int tick) {
+		return grassMeans[tick];
+	}
+
+	public double getGrassVariance(int tick) {
+		return counts[tick] > 1 ? grassM2s[tick] / (counts[tick] - 1) : 0;
+	}
+
+	public double getGrassQuantile(int tick, int quantileIndex) {
+		return grassQuantiles[tick][quantileIndex].getQuantile();
+	}
+
+	/**
+	 * Writes the time series in binary if the file name ends with ".bin",
+	 * in CSV otherwise
+	 */
+	public void write(String fileName) {
+		try {
+			if(fileName.endsWith(".bin"))
+				writeBinary(fileName);
+			else
+				writeCsv(fileName);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * One line per tick: tick, replicates, then for the rabbits and the grass
+	 * the mean, the standard deviation and the quantiles
+	 */
+	private void writeCsv(String fileName) throws IOException {
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
+			StringBuilder header = new StringBuilder("tick,replicates");
+			for(String population : new String[] { "rabbit", "grass" }) {
+				header.append(',').append(population).append("Mean,").append(population).append("Std");
+				for(double quantile : QUANTILES)
+					header.append(',').append(population).append('P').append(Math.round(quantile * 100));
+			}
+			writer.write(header.toString());
+			writer.newLine();
+
+			for(int tick = 0; tick < tickNb; ++tick) {
+				StringBuilder line = new StringBuilder();
+				line.append(tick + 1).append(',').append(counts[tick]);
+				appendCsv(line, getRabbitMean(tick), Math.sqrt(getRabbitVariance(tick)), rabbitQuantiles[tick]);
+				appendCsv(line, getGrassMean(tick), Math.sqrt(getGrassVariance(tick)), grassQuantiles[tick]);
+				writer.write(line.toString());
+				writer.newLine();
+			}
+		}
+	}
+
+	private static void appendCsv(StringBuilder line, double mean, double std, P2Quantile[] quantiles) {
+		line.append(',').append(String.format(Locale.ROOT, "%.3f", mean))
+			.append(',').append(String.format(Locale.ROOT, "%.3f", std));
+		for(P2Quantile quantile : quantiles)
+			line.append(',').append(String.format(Locale.ROOT, "%.1f", quantile.getQuantile()));
+	}
+
+	/**
+	 * Big-endian header (tick number as an int, quantile number as an int,
+	 * the quantiles as doubles), then per tick the replicate number as an int
+	 * and, for the rabbits and the grass, the mean, the standard deviation
+	 * and the quantiles as floats
+	 */
+	private void writeBinary(String fileName) throws IOException {
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16))) {
+			output.writeInt(tickNb);
+			output.writeInt(QUANTILES.length);
+			for(double quantile : QUANTILES)
+				output.writeDouble(quantile);
+
+			for(int tick = 0; tick < tickNb; ++tick) {
+				output.writeInt(counts[tick]);
+				writeBinary(output, getRabbitMean(tick), Math.sqrt(getRabbitVariance(tick)), rabbitQuantiles[tick]);
+				writeBinary(output, getGrassMean(tick), Math.sqrt(getGrassVariance(tick)), grassQuantiles[tick]);
+			}
+		}
+	}
+
+	private static void writeBinary(DataOutputStream output, double mean, double std, P2Quantile[] quantiles) throws IOException {
+		output.writeFloat((float)mean);
+		output.writeFloat((float)std);
+		for(P2Quantile quantile : quantiles)
+			output.writeFloat((float)quantile.getQuantile());
+	}
+}
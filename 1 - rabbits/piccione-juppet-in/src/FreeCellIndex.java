@@ -0,0 +1,101 @@
+import java.util.SplittableRandom;
+
+/**
+ * Class that keeps track of the free cells of a layer of the simulation space.
+ * All the cell ids are kept in one array: the first freeNb entries are the free
+ * cells and the others are the used ones. A position map gives the index of a
+ * cell in this array, so marking a cell as used or free is a single swap and
+ * a random free cell can be picked in O(1) however full the grid is.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class FreeCellIndex {
+
+	private final int[] cells;
+	private final int[] positions;
+	private int freeNb;
+
+	public FreeCellIndex(int cellNb) {
+		cells = new int[cellNb];
+		positions = new int[cellNb];
+		for(int i = 0; i < cellNb; ++i) {
+			cells[i] = i;
+			positions[i] = i;
+		}
+		freeNb = cellNb;
+	}
+
+	public int getFreeNb() {
+		return freeNb;
+	}
+
+	public int getCellNb() {
+		return cells.length;
+	}
+
+	public boolean isFree(int cell) {
+		return positions[cell] < freeNb;
+	}
+
+	/**
+	 * Returns a free cell chosen uniformly at random with the given generator,
+	 * or -1 if there is none
+	 */
+	public int getRandomFreeCell(SplittableRandom random) {
+		if(freeNb == 0)
+			return -1;
+		return cells[random.nextInt(freeNb)];
+	}
+
+	/**
+	 * Marks the cell as used
+	 * @return false if the cell was already used
+	 */
+	public boolean markUsed(int cell) {
+		int position = positions[cell];
+		if(position >= freeNb)
+			return false;
+
+		// Move the cell just after the free part and shrink the free part
+		swap(position, --freeNb);
+		return true;
+	}
+
+	/**
+	 * Marks the cell as free
+	 * @return false if the cell was already free
+	 */
+	public boolean markFree(int cell) {
+		int position = positions[cell];
+		if(position < freeNb)
+			return false;
+
+		// Move the cell at the beginning of the used part and grow the free part
+		swap(position, freeNb++);
+		return true;
+	}
+
+	public void writeTo(MappedFile out) {
+		out.putInt(freeNb);
+		out.putInts(cells, 0, cells.length);
+	}
+
+	/**
+	 * Overwrites the index with one written by writeTo for the same number of cells
+	 */
+	public void readFrom(MappedFile in) {
+		freeNb = in.getInt();
+		in.getInts(cells, 0, cells.length);
+		for(int i = 0; i < cells.length; ++i)
+			positions[cells[i]] = i;
+	}
+
+	private void swap(int i, int j) {
+		int cellI = cells[i];
+		int cellJ = cells[j];
+		cells[i] = cellJ;
+		cells[j] = cellI;
+		positions[cellJ] = i;
+		positions[cellI] = j;
+	}
+}
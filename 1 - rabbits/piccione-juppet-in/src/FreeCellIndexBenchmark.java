@@ -0,0 +1,94 @@
+import java.util.SplittableRandom;
+
+/**
+ * Small benchmark that compares the placement of objects on random free cells
+ * with rejection sampling (what spreadGrass and spreadRabbits used to do)
+ * and with the FreeCellIndex, for grids filled at 50%, 90% and 99%.
+ *
+ * Usage: java FreeCellIndexBenchmark [gridSize] [rounds]
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class FreeCellIndexBenchmark {
+
+	private static final double[] FILL_RATES = { 0.5, 0.9, 0.99 };
+	private static final int WARMUP_ROUNDS = 5;
+
+	public static void main(String[] args) {
+		int gridSize = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		int cellNb = gridSize * gridSize;
+		SplittableRandom random = new SplittableRandom(42);
+
+		System.out.println("Grid " + gridSize + "x" + gridSize + ", " + rounds + " rounds");
+		System.out.println("fill\trejection (ns/placement)\tindex (ns/placement)");
+
+		for(double fillRate : FILL_RATES) {
+			int usedNb = (int)(cellNb * fillRate);
+			// Place a batch small enough to stay around the fill rate
+			int batchNb = Math.max(1, (cellNb - usedNb) / 10);
+
+			double rejection = benchmarkRejection(cellNb, usedNb, batchNb, rounds, random);
+			double index = benchmarkIndex(cellNb, usedNb, batchNb, rounds, random);
+			System.out.println((int)(fillRate * 100) + "%\t" + String.format("%.1f", rejection)
+					+ "\t\t\t\t" + String.format("%.1f", index));
+		}
+	}
+
+	private static double benchmarkRejection(int cellNb, int usedNb, int batchNb, int rounds, SplittableRandom random) {
+		byte[] used = new byte[cellNb];
+		FreeCellIndex initial = new FreeCellIndex(cellNb);
+		for(int i = 0; i < usedNb; ++i) {
+			int cell = initial.getRandomFreeCell(random);
+			initial.markUsed(cell);
+			used[cell] = 1;
+		}
+
+		int[] placed = new int[batchNb];
+		long totalTime = 0;
+		for(int round = 0; round < WARMUP_ROUNDS + rounds; ++round) {
+			long startTime = System.nanoTime();
+			for(int i = 0; i < batchNb; ++i) {
+				int cell;
+				do {
+					cell = random.nextInt(cellNb);
+				}while(used[cell] == 1);
+				used[cell] = 1;
+				placed[i] = cell;
+			}
+			long endTime = System.nanoTime();
+			if(round >= WARMUP_ROUNDS)
+				totalTime += endTime - startTime;
+
+			// Go back to the initial fill rate
+			for(int i = 0; i < batchNb; ++i)
+				used[placed[i]] = 0;
+		}
+		return totalTime / (double)(rounds * (long)batchNb);
+	}
+
+	private static double benchmarkIndex(int cellNb, int usedNb, int batchNb, int rounds, SplittableRandom random) {
+		FreeCellIndex index = new FreeCellIndex(cellNb);
+		for(int i = 0; i < usedNb; ++i)
+			index.markUsed(index.getRandomFreeCell(random));
+
+		int[] placed = new int[batchNb];
+		long totalTime = 0;
+		for(int round = 0; round < WARMUP_ROUNDS + rounds; ++round) {
+			long startTime = System.nanoTime();
+			for(int i = 0; i < batchNb; ++i) {
+				int cell = index.getRandomFreeCell(random);
+				index.markUsed(cell);
+				placed[i] = cell;
+			}
+			long endTime = System.nanoTime();
+			if(round >= WARMUP_ROUNDS)
+				totalTime += endTime - startTime;
+
+			// Go back to the initial fill rate
+			for(int i = 0; i < batchNb; ++i)
+				index.markFree(placed[i]);
+		}
+		return totalTime / (double)(rounds * (long)batchNb);
+	}
+}
@@ -0,0 +1,140 @@
+import java.util.SplittableRandom;
+
+/**
+ * Interface of the grass layer of the simulation space.
+ * Cells are identified by y * sizeX + x, as a long so that very large worlds
+ * can be addressed.
+ *
+ * The unindexed operations let tiles stepped in parallel change disjoint
+ * parts of the layer; syncFreeCell must then be called, sequentially, for
+ * every cell they changed.
+ *
+ * Rows can be read as bits, so that rabbits can look for the nearest grass
+ * with word operations rather than cell by cell.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public interface GrassLayer {
+
+	/**
+	 * Largest radius supported by findNearestGrass, so that a row of the
+	 * neighbourhood fits in a long
+	 */
+	int MAX_RADIUS = 31;
+
+	long NO_GRASS_NEAR = Long.MIN_VALUE;
+
+	int getSizeX();
+
+	int getSizeY();
+
+	int getGrassNb();
+
+	/**
+	 * Returns 1 if there is grass on the cell, 0 otherwise
+	 */
+	int getValueAt(int x, int y);
+
+	boolean isGrassAt(int x, int y);
+
+	/**
+	 * Returns the grass of width cells of row y starting at column x, going
+	 * around the torus: bit i is 1 if there is grass on (x + i) mod sizeX.
+	 * The width is at most 64.
+	 */
+	long getRowBits(int x, int y, int width);
+
+	/**
+	 * Returns the offset (dx, dy) of the nearest grass at a Manhattan distance
+	 * of at most radius (at most MAX_RADIUS) of the cell, packed by packOffset,
+	 * or NO_GRASS_NEAR if there is none. Between cells at the same distance,
+	 * the one with the smallest |dy| wins; the sides are chosen at random.
+	 */
+	default long findNearestGrass(int x, int y, int radius, SplittableRandom random) {
+		int sizeX = getSizeX();
+		int sizeY = getSizeY();
+		int bestDistance = radius + 1;
+		long best = NO_GRASS_NEAR;
+
+		for(int d = 0; d < bestDistance; ++d) {
+			int span = radius - d;
+			int sideNb = d == 0 ? 1 : 2;
+			int firstSide = d == 0 ? 1 : (random.nextBoolean() ? 1 : -1);
+			for(int i = 0; i < sideNb; ++i) {
+				int dy = (i == 0 ? firstSide : -firstSide) * d;
+				int row = Math.floorMod(y + dy, sizeY);
+				// Bits of the columns x - span to x + span, the rabbit being bit span
+				long bits = getRowBits(Math.floorMod(x - span, sizeX), row, 2 * span + 1);
+				if(bits == 0)
+					continue;
+
+				long right = bits >>> span;
+				long left = bits & ((1L << span) - 1);
+				int rightDistance = right == 0 ? Integer.MAX_VALUE : Long.numberOfTrailingZeros(right);
+				int leftDistance = left == 0 ? Integer.MAX_VALUE : span - (63 - Long.numberOfLeadingZeros(left));
+				int dx;
+				if(rightDistance < leftDistance || (rightDistance == leftDistance && random.nextBoolean()))
+					dx = rightDistance;
+				else
+					dx = -leftDistance;
+
+				if(d + Math.abs(dx) < bestDistance) {
+					bestDistance = d + Math.abs(dx);
+					best = packOffset(dx, dy);
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Puts grass on the cell
+	 * @return true if there was no grass on the cell before
+	 */
+	boolean putGrassAt(int x, int y);
+
+	/**
+	 * Removes the grass of the cell
+	 * @return true if there was grass on the cell before
+	 */
+	boolean removeGrassAt(int x, int y);
+
+	/**
+	 * Returns a cell without grass chosen uniformly at random, or -1 if there is none
+	 */
+	long getRandomFreeCell(SplittableRandom random);
+
+	/**
+	 * Writes the content of the layer, including the order of its free cells
+	 */
+	void writeTo(MappedFile out);
+
+	/**
+	 * Overwrites the layer with one of the same size written by writeTo
+	 */
+	void readFrom(MappedFile in);
+
+	/**
+	 * Removes the grass of the cell, possibly leaving the grass count and the
+	 * free cells stale until syncFreeCell is called
+	 * @return true if there was grass on the cell before
+	 */
+	boolean removeGrassUnindexed(int x, int y);
+
+	/**
+	 * Updates the grass count and the free cells so that they match the content of the cell
+	 */
+	void syncFreeCell(int x, int y);
+
+	static long packOffset(int dx, int dy) {
+		return (long)dx << 32 | (dy & 0xFFFFFFFFL);
+	}
+
+	static int offsetX(long offset) {
+		return (int)(offset >> 32);
+	}
+
+	static int offsetY(long offset) {
+		return (int)offset;
+	}
+}
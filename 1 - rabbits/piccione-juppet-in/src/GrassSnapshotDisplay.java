@@ -0,0 +1,88 @@
+import java.awt.Dimension;
+
+import uchicago.src.collection.BaseMatrix;
+import uchicago.src.sim.space.Discrete2DSpace;
+
+/**
+ * Read-only adapter that lets a Value2DDisplay draw the grass of the snapshot
+ * being painted by a DisplayRenderer.
+ * Value2DDisplay reads the cells through getMatrix().get(x, y), so the adapter
+ * is its own matrix and returns the cached Integer values 0 and 1.
+ * The display must draw in DisplayRenderer.paint.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class GrassSnapshotDisplay implements Discrete2DSpace, BaseMatrix {
+
+	private final DisplayRenderer renderer;
+	private SimulationSnapshot drawn; // Read once per drawing by getMatrix
+
+	public GrassSnapshotDisplay(DisplayRenderer renderer) {
+		this.renderer = renderer;
+	}
+
+	public int getSizeX() {
+		return renderer.getSnapshot().getSizeX();
+	}
+
+	public int getSizeY() {
+		return renderer.getSnapshot().getSizeY();
+	}
+
+	public Dimension getSize() {
+		return new Dimension(renderer.getSnapshot().getSizeX(), renderer.getSnapshot().getSizeY());
+	}
+
+	public Object getObjectAt(int x, int y) {
+		return renderer.read(snapshot -> Integer.valueOf(snapshot.getGrassAt(x, y)));
+	}
+
+	public double getValueAt(int x, int y) {
+		return renderer.read(snapshot -> snapshot.getGrassAt(x, y));
+	}
+
+	public void putObjectAt(int x, int y, Object object) {
+		throw new UnsupportedOperationException("The grass display is read-only");
+	}
+
+	public void putValueAt(int x, int y, double value) {
+		throw new UnsupportedOperationException("The grass display is read-only");
+	}
+
+	/**
+	 * Called once at the start of each drawing, which then reads the cells
+	 * of the same snapshot through get
+	 */
+	public BaseMatrix getMatrix() {
+		drawn = renderer.getSnapshot();
+		return this;
+	}
+
+	public Object get(int x, int y) {
+		return Integer.valueOf(drawn.getGrassAt(x, y));
+	}
+
+	public void put(int x, int y, Object object) {
+		putObjectAt(x, y, object);
+	}
+
+	public Object remove(int x, int y) {
+		throw new UnsupportedOperationException("The grass display is read-only");
+	}
+
+	public int size() {
+		return renderer.getSnapshot().getSizeX() * renderer.getSnapshot().getSizeY();
+	}
+
+	public int getNumRows() {
+		return renderer.getSnapshot().getSizeY();
+	}
+
+	public int getNumCols() {
+		return renderer.getSnapshot().getSizeX();
+	}
+
+	public void trim() {
+		// Nothing to trim
+	}
+}
@@ -0,0 +1,184 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sequential reader or writer of big-endian primitives and primitive arrays
+ * through memory-mapped windows of a file, so that files larger than 2 GB
+ * are copied with bulk memory transfers rather than with system calls.
+ * A file being written grows window by window and is cut to its content
+ * when closed.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class MappedFile implements Closeable {
+
+	private static final long WINDOW_SIZE = 1L << 26;
+
+	private final FileChannel channel;
+	private final boolean writing;
+	private MappedByteBuffer window;
+	private long windowStart = 0;
+
+	private MappedFile(FileChannel channel, boolean writing) {
+		this.channel = channel;
+		this.writing = writing;
+	}
+
+	/**
+	 * Creates or replaces the file and opens it for writing
+	 */
+	public static MappedFile create(Path path) {
+		try {
+			return new MappedFile(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.READ, StandardOpenOption.WRITE), true);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Opens the file for reading
+	 */
+	public static MappedFile open(Path path) {
+		try {
+			return new MappedFile(FileChannel.open(path, StandardOpenOption.READ), false);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns the position in the file
+	 */
+	public long position() {
+		return window == null ? windowStart : windowStart + window.position();
+	}
+
+	public void putByte(byte value) {
+		ensure(1).put(value);
+	}
+
+	public void putInt(int value) {
+		ensure(4).putInt(value);
+	}
+
+	public void putLong(long value) {
+		ensure(8).putLong(value);
+	}
+
+	public byte getByte() {
+		return ensure(1).get();
+	}
+
+	public int getInt() {
+		return ensure(4).getInt();
+	}
+
+	public long getLong() {
+		return ensure(8).getLong();
+	}
+
+	public void putBytes(byte[] values, int from, int length) {
+		while(length > 0) {
+			MappedByteBuffer buffer = ensure(1);
+			int n = Math.min(length, buffer.remaining());
+			buffer.put(values, from, n);
+			from += n;
+			length -= n;
+		}
+	}
+
+	public void getBytes(byte[] values, int from, int length) {
+		while(length > 0) {
+			MappedByteBuffer buffer = ensure(1);
+			int n = Math.min(length, buffer.remaining());
+			buffer.get(values, from, n);
+			from += n;
+			length -= n;
+		}
+	}
+
+	public void putInts(int[] values, int from, int length) {
+		while(length > 0) {
+			MappedByteBuffer buffer = ensure(4);
+			int n = Math.min(length, buffer.remaining() / 4);
+			buffer.asIntBuffer().put(values, from, n);
+			buffer.position(buffer.position() + 4 * n);
+			from += n;
+			length -= n;
+		}
+	}
+
+	public void getInts(int[] values, int from, int length) {
+		while(length > 0) {
+			MappedByteBuffer buffer = ensure(4);
+			int n = Math.min(length, buffer.remaining() / 4);
+			buffer.asIntBuffer().get(values, from, n);
+			buffer.position(buffer.position() + 4 * n);
+			from += n;
+			length -= n;
+		}
+	}
+
+	public void putLongs(long[] values, int from, int length) {
+		while(length > 0) {
+			MappedByteBuffer buffer = ensure(8);
+			int n = Math.min(length, buffer.remaining() / 8);
+			buffer.asLongBuffer().put(values, from, n);
+			buffer.position(buffer.position() + 8 * n);
+			from += n;
+			length -= n;
+		}
+	}
+
+	public void getLongs(long[] values, int from, int length) {
+		while(length > 0) {
+			MappedByteBuffer buffer = ensure(8);
+			int n = Math.min(length, buffer.remaining() / 8);
+			buffer.asLongBuffer().get(values, from, n);
+			buffer.position(buffer.position() + 8 * n);
+			from += n;
+			length -= n;
+		}
+	}
+
+	public void close() {
+		try {
+			long size = position();
+			window = null;
+			if(writing)
+				channel.truncate(size);
+			channel.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns the current window, mapping the next one if it has less than
+	 * byteNb bytes left
+	 */
+	private MappedByteBuffer ensure(int byteNb) {
+		if(window != null && window.remaining() >= byteNb)
+			return window;
+
+		try {
+			windowStart = position();
+			long size = WINDOW_SIZE;
+			if(!writing) {
+				size = Math.min(size, channel.size() - windowStart);
+				if(size < byteNb)
+					throw new IOException("Unexpected end of file at " + windowStart);
+			}
+			window = channel.map(writing ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, windowStart, size);
+			return window;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
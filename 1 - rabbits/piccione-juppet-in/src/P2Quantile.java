@@ -0,0 +1,104 @@
+import java.util.Arrays;
+
+/**
+ * Streaming estimator of one quantile with the P-square algorithm of Jain and
+ * Chlamtac: five markers are moved along the observations with a piecewise
+ * parabolic interpolation, so the memory is constant whatever the number of
+ * observations. The estimate depends on the order of the observations.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class P2Quantile {
+
+	private static final int MARKER_NB = 5;
+
+	private final double p;
+	private final double[] heights = new double[MARKER_NB];
+	private final int[] positions = new int[MARKER_NB];
+	private final double[] desired = new double[MARKER_NB];
+	private final double[] increments;
+	private int count = 0;
+
+	public P2Quantile(double p) {
+		if(p < 0 || p > 1)
+			throw new IllegalArgumentException("The quantile must be in [0, 1]: " + p);
+		this.p = p;
+		increments = new double[] { 0, p / 2, p, (1 + p) / 2, 1 };
+	}
+
+	public double getP() {
+		return p;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public void add(double x) {
+		if(count < MARKER_NB) {
+			heights[count++] = x;
+			if(count == MARKER_NB) {
+				Arrays.sort(heights);
+				for(int i = 0; i < MARKER_NB; ++i) {
+					positions[i] = i;
+					desired[i] = 4 * increments[i];
+				}
+			}
+			return;
+		}
+		++count;
+
+		// Cell of the new observation, extending the extreme markers if needed
+		int k;
+		if(x < heights[0]) {
+			heights[0] = x;
+			k = 0;
+		} else if(x >= heights[4]) {
+			heights[4] = x;
+			k = 3;
+		} else {
+			k = 0;
+			while(x >= heights[k + 1])
+				++k;
+		}
+
+		for(int i = k + 1; i < MARKER_NB; ++i)
+			++positions[i];
+		for(int i = 0; i < MARKER_NB; ++i)
+			desired[i] += increments[i];
+
+		// Move the middle markers towards their desired positions
+		for(int i = 1; i < MARKER_NB - 1; ++i) {
+			double d = desired[i] - positions[i];
+			if((d >= 1 && positions[i + 1] - positions[i] > 1) || (d <= -1 && positions[i - 1] - positions[i] < -1)) {
+				int step = d > 0 ? 1 : -1;
+				double height = parabolic(i, step);
+				if(heights[i - 1] < height && height < heights[i + 1])
+					heights[i] = height;
+				else
+					heights[i] += step * (heights[i + step] - heights[i]) / (positions[i + step] - positions[i]);
+				positions[i] += step;
+			}
+		}
+	}
+
+	/**
+	 * Returns the estimated quantile, NaN if there was no observation
+	 */
+	public double getQuantile() {
+		if(count == 0)
+			return Double.NaN;
+		if(count < MARKER_NB) {
+			double[] sorted = Arrays.copyOf(heights, count);
+			Arrays.sort(sorted);
+			return sorted[(int)Math.round(p * (count - 1))];
+		}
+		return heights[2];
+	}
+
+	private double parabolic(int i, int step) {
+		return heights[i] + step / (double)(positions[i + 1] - positions[i - 1])
+				* ((positions[i] - positions[i - 1] + step) * (heights[i + 1] - heights[i]) / (positions[i + 1] - positions[i])
+				+ (positions[i + 1] - positions[i] - step) * (heights[i] - heights[i - 1]) / (positions[i] - positions[i - 1]));
+	}
+}
@@ -0,0 +1,258 @@
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runner that explores the parameters of the rabbits grass simulation with
+ * many independent headless runs spread over all the cores.
+ *
+ * The sweep is described by a properties file:
+ *   design=grid or lhs (Latin hypercube)
+ *   samples=number of samples (lhs only)
+ *   replicates=number of runs of each sample, with different seeds
+ *   ticks=number of ticks of each run
+ *   seed=seed from which the seeds of the runs are drawn
+ *   threads=number of threads (0 for all the cores)
+ *   output=CSV file of the run summaries
+ *   steadyWindow=window in ticks of the SteadyStateDetector that ends runs
+ *     early on extinction, saturation, fixed point or periodic orbit
+ *     (0, the default, to always run all the ticks; windows below
+ *     SteadyStateDetector.MIN_WINDOW are raised to it)
+ *   checkpoint=optional SimulationCheckpoint from which all the runs start,
+ *     to explore what-if continuations of a warmed-up state (the grid size
+ *     must then be the one of the checkpoint)
+ * and one line per swept parameter (see RabbitsGrassSimulationParameters.NAMES):
+ *   grid: Name=v1,v2,v3 or Name=start:end:step
+ *   lhs:  Name=min:max
+ * The other parameters keep their default value, or their value in the checkpoint.
+ *
+ * Usage: java ParameterSweep sweep.properties
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class ParameterSweep {
+
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		if(args.length != 1) {
+			System.err.println("Usage: java ParameterSweep <sweep.properties>");
+			System.exit(1);
+		}
+
+		Properties spec = new Properties();
+		try (Reader reader = new FileReader(args[0])) {
+			spec.load(reader);
+		}
+
+		String design = spec.getProperty("design", "grid");
+		int replicates = Integer.parseInt(spec.getProperty("replicates", "1"));
+		int ticks = Integer.parseInt(spec.getProperty("ticks", "1000"));
+		long seed = Long.parseLong(spec.getProperty("seed", "0"));
+		int threads = Integer.parseInt(spec.getProperty("threads", "0"));
+		String output = spec.getProperty("output", "sweep.csv");
+		int steadyWindow = Integer.parseInt(spec.getProperty("steadyWindow", "0"));
+		if(steadyWindow < 0)
+			throw new IllegalArgumentException("steadyWindow must be 0 (off) or a number of ticks: " + steadyWindow);
+		String checkpointFile = spec.getProperty("checkpoint");
+		Path checkpoint = checkpointFile == null ? null : Paths.get(checkpointFile);
+
+		// The parameters not swept keep the value of the checkpoint
+		RabbitsGrassSimulationParameters base = checkpoint == null ? new RabbitsGrassSimulationParameters()
+				: SimulationCheckpoint.readParameters(checkpoint);
+
+		List<RabbitsGrassSimulationParameters> samples;
+		switch(design) {
+		case "grid":
+			samples = gridSamples(spec, base);
+			break;
+		case "lhs":
+			int sampleNb = Integer.parseInt(spec.getProperty("samples", "100"));
+			samples = latinHypercubeSamples(spec, base, sampleNb, new SplittableRandom(seed));
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown design " + design);
+		}
+
+		// One seed per run, drawn in run order so that the sweep is repeatable
+		SplittableRandom seeds = new SplittableRandom(seed);
+		List<RabbitsGrassSimulationParameters> runs = new ArrayList<>();
+		for(RabbitsGrassSimulationParameters sample : samples) {
+			for(int i = 0; i < replicates; ++i) {
+				RabbitsGrassSimulationParameters run = new RabbitsGrassSimulationParameters(sample);
+				run.setSeed(seeds.nextLong());
+				runs.add(run);
+			}
+		}
+
+		if(threads <= 0)
+			threads = Runtime.getRuntime().availableProcessors();
+		System.out.println(runs.size() + " runs of " + ticks + " ticks on " + threads + " threads");
+
+		long startTime = System.currentTimeMillis();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(output))) {
+			writer.write(header());
+			writer.newLine();
+
+			CompletionService<String> completion = new ExecutorCompletionService<>(executor);
+			for(int i = 0; i < runs.size(); ++i) {
+				int runIndex = i;
+				RabbitsGrassSimulationParameters run = runs.get(i);
+				completion.submit(() -> summaryLine(runIndex, run, runSimulation(run, ticks, checkpoint, steadyWindow)));
+			}
+
+			// Write the summaries as soon as the runs end
+			for(int i = 0; i < runs.size(); ++i) {
+				Future<String> line = completion.take();
+				writer.write(line.get());
+				writer.newLine();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		System.out.println("Done in " + (System.currentTimeMillis() - startTime) + " ms");
+	}
+
+	/**
+	 * Runs a simulation from scratch, or from the checkpoint if it is not null.
+	 * With a steady window greater than 0, the run stops as soon as a
+	 * SteadyStateDetector with this window gives a reason.
+	 */
+	static RunSummary runSimulation(RabbitsGrassSimulationParameters parameters, int ticks, Path checkpoint, int steadyWindow) {
+		RabbitsGrassSimulation simulation;
+		if(checkpoint == null)
+			simulation = new RabbitsGrassSimulation(parameters);
+		else
+			simulation = SimulationCheckpoint.restore(checkpoint, parameters);
+		int gridSize = parameters.getGridSize();
+		SteadyStateDetector detector = steadyWindow > 0 ? new SteadyStateDetector((long)gridSize * gridSize, steadyWindow) : null;
+		RunSummary summary = new RunSummary();
+		for(int i = 0; i < ticks; ++i) {
+			simulation.step();
+			summary.add(simulation.getTick(), simulation.getRabbitNb(), simulation.getGrassNb());
+			if(detector != null && detector.add(simulation.getTick(), simulation.getRabbitNb(), simulation.getGrassNb()) != null) {
+				summary.setStop(detector.getReason().name(), detector.getDetectionTick());
+				break;
+			}
+		}
+		return summary;
+	}
+
+	private static List<RabbitsGrassSimulationParameters> gridSamples(Properties spec, RabbitsGrassSimulationParameters base) {
+		List<RabbitsGrassSimulationParameters> samples = new ArrayList<>();
+		samples.add(new RabbitsGrassSimulationParameters(base));
+
+		for(String name : RabbitsGrassSimulationParameters.NAMES) {
+			String values = spec.getProperty(name);
+			if(values == null)
+				continue;
+
+			// Cartesian product with the values of this parameter
+			List<RabbitsGrassSimulationParameters> product = new ArrayList<>();
+			for(int value : parseValues(values)) {
+				for(RabbitsGrassSimulationParameters sample : samples) {
+					RabbitsGrassSimulationParameters newSample = new RabbitsGrassSimulationParameters(sample);
+					newSample.set(name, value);
+					product.add(newSample);
+				}
+			}
+			samples = product;
+		}
+		return samples;
+	}
+
+	private static int[] parseValues(String values) {
+		values = values.trim();
+		if(values.contains(":")) {
+			String[] range = values.split(":");
+			int start = Integer.parseInt(range[0].trim());
+			int end = Integer.parseInt(range[1].trim());
+			int step = range.length > 2 ? Integer.parseInt(range[2].trim()) : 1;
+			if(step <= 0)
+				throw new IllegalArgumentException("The step of " + values + " must be positive");
+
+			int[] result = new int[(end - start) / step + 1];
+			for(int i = 0; i < result.length; ++i)
+				result[i] = start + i * step;
+			return result;
+		}
+
+		String[] list = values.split(",");
+		int[] result = new int[list.length];
+		for(int i = 0; i < list.length; ++i)
+			result[i] = Integer.parseInt(list[i].trim());
+		return result;
+	}
+
+	private static List<RabbitsGrassSimulationParameters> latinHypercubeSamples(Properties spec, RabbitsGrassSimulationParameters base,
+			int sampleNb, SplittableRandom random) {
+		List<RabbitsGrassSimulationParameters> samples = new ArrayList<>();
+		for(int i = 0; i < sampleNb; ++i)
+			samples.add(new RabbitsGrassSimulationParameters(base));
+
+		for(String name : RabbitsGrassSimulationParameters.NAMES) {
+			String range = spec.getProperty(name);
+			if(range == null)
+				continue;
+
+			String[] bounds = range.split(":");
+			double min = Double.parseDouble(bounds[0].trim());
+			double max = Double.parseDouble(bounds[1].trim());
+
+			// Each of the sampleNb strata of [min, max] gets exactly one sample
+			int[] strata = new int[sampleNb];
+			for(int i = 0; i < sampleNb; ++i)
+				strata[i] = i;
+			for(int i = sampleNb - 1; i > 0; --i) {
+				int j = random.nextInt(i + 1);
+				int stratum = strata[i];
+				strata[i] = strata[j];
+				strata[j] = stratum;
+			}
+
+			for(int i = 0; i < sampleNb; ++i) {
+				double value = min + (strata[i] + random.nextDouble()) * (max - min) / sampleNb;
+				samples.get(i).set(name, (int)Math.round(value));
+			}
+		}
+		return samples;
+	}
+
+	private static String header() {
+		StringBuilder header = new StringBuilder("run");
+		for(String name : RabbitsGrassSimulationParameters.NAMES)
+			header.append(',').append(name);
+		header.append(",Seed,ExtinctionTick,RabbitMean,RabbitVariance,GrassMean,GrassVariance,RabbitPeriod,StopReason,StopTick");
+		return header.toString();
+	}
+
+	private static String summaryLine(int runIndex, RabbitsGrassSimulationParameters run, RunSummary summary) {
+		StringBuilder line = new StringBuilder();
+		line.append(runIndex);
+		for(String name : RabbitsGrassSimulationParameters.NAMES)
+			line.append(',').append(run.get(name));
+		line.append(',').append(run.getSeed())
+			.append(',').append(summary.getExtinctionTick())
+			.append(',').append(summary.getRabbitMean())
+			.append(',').append(summary.getRabbitVariance())
+			.append(',').append(summary.getGrassMean())
+			.append(',').append(summary.getGrassVariance())
+			.append(',').append(summary.getRabbitPeriod())
+			.append(',').append(summary.getStopReason())
+			.append(',').append(summary.getStopTick());
+		return line.toString();
+	}
+}
@@ -0,0 +1,21 @@
+/**
+ * Interface of the outputs to which the headless model streams the number of
+ * rabbits and grass at each tick.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public interface PopulationSink {
+
+	void record(long tick, int rabbitNb, int grassNb);
+
+	void close();
+
+	/**
+	 * Opens a binary sink if the file name ends with ".bin", a CSV sink otherwise
+	 */
+	static PopulationSink open(String fileName, boolean append) {
+		if(fileName.endsWith(".bin"))
+			return new BinaryPopulationSink(fileName, append);
+		return new CsvPopulationSink(fileName, append);
+	}
+}
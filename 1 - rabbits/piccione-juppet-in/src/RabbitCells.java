@@ -0,0 +1,56 @@
+import java.util.SplittableRandom;
+
+/**
+ * Interface of the map from the cells of the simulation space to the slot
+ * of the rabbit on them in the RabbitPopulation (-1 if the cell is free).
+ * Cells are identified by y * sizeX + x, as a long so that very large worlds
+ * can be addressed.
+ *
+ * The unindexed operation lets tiles stepped in parallel change disjoint
+ * parts of the map; syncFreeCell must then be called, sequentially, for
+ * every cell it changed.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public interface RabbitCells {
+
+	int getSizeX();
+
+	int getSizeY();
+
+	/**
+	 * Returns the slot of the rabbit on the cell, or -1 if there is none
+	 */
+	int getSlotAt(int x, int y);
+
+	/**
+	 * Sets the slot of the rabbit on the cell, -1 to free it
+	 */
+	void putSlotAt(int x, int y, int slot);
+
+	/**
+	 * Sets the slot of the rabbit on the cell, possibly leaving the free
+	 * cells stale until syncFreeCell is called
+	 */
+	void putSlotUnindexed(int x, int y, int slot);
+
+	/**
+	 * Updates the free cells so that they match the content of the cell
+	 */
+	void syncFreeCell(int x, int y);
+
+	/**
+	 * Returns a free cell chosen uniformly at random, or -1 if there is none
+	 */
+	long getRandomFreeCell(SplittableRandom random);
+
+	/**
+	 * Writes the content of the map, including the order of its free cells
+	 */
+	void writeTo(MappedFile out);
+
+	/**
+	 * Overwrites the map with one of the same size written by writeTo
+	 */
+	void readFrom(MappedFile in);
+}
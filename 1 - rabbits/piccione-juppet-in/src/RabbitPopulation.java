@@ -0,0 +1,225 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Class that stores the rabbits of the simulation as a structure of arrays:
+ * the position and energy of the rabbit in slot i are xs[i], ys[i] and energies[i].
+ * The slots 0 to size - 1 are used, so removing a rabbit moves the last one
+ * into its slot. The slot of the rabbit on each cell (or -1) and the free
+ * cells of the grid are kept in a RabbitCells.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class RabbitPopulation {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final int sizeX;
+	private final int sizeY;
+
+	private int[] xs = new int[INITIAL_CAPACITY];
+	private int[] ys = new int[INITIAL_CAPACITY];
+	private int[] energies = new int[INITIAL_CAPACITY];
+	private int size = 0;
+
+	private final RabbitCells cells;
+
+	public RabbitPopulation(int sizeX, int sizeY) {
+		this(new DenseRabbitCells(sizeX, sizeY));
+	}
+
+	public RabbitPopulation(RabbitCells cells) {
+		this.sizeX = cells.getSizeX();
+		this.sizeY = cells.getSizeY();
+		this.cells = cells;
+	}
+
+	public int getSizeX() {
+		return sizeX;
+	}
+
+	public int getSizeY() {
+		return sizeY;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns a free cell chosen uniformly at random, or -1 if there is none
+	 */
+	public long getRandomFreeCell(SplittableRandom random) {
+		return cells.getRandomFreeCell(random);
+	}
+
+	public int getX(int slot) {
+		return xs[slot];
+	}
+
+	public int getY(int slot) {
+		return ys[slot];
+	}
+
+	public int getEnergy(int slot) {
+		return energies[slot];
+	}
+
+	public void addToEnergy(int slot, int toAdd) {
+		energies[slot] += toAdd;
+	}
+
+	/**
+	 * Returns the slot of the rabbit on the cell, or -1 if there is none
+	 */
+	public int getSlotAt(int x, int y) {
+		return cells.getSlotAt(x, y);
+	}
+
+	/**
+	 * Adds a rabbit on a free cell
+	 * @return the slot of the new rabbit
+	 */
+	public int add(int x, int y, int energy) {
+		if(size == xs.length) {
+			int capacity = size * 2;
+			xs = Arrays.copyOf(xs, capacity);
+			ys = Arrays.copyOf(ys, capacity);
+			energies = Arrays.copyOf(energies, capacity);
+		}
+
+		int slot = size++;
+		xs[slot] = x;
+		ys[slot] = y;
+		energies[slot] = energy;
+
+		cells.putSlotAt(x, y, slot);
+		return slot;
+	}
+
+	/**
+	 * Removes the rabbit of the slot. The last rabbit takes its place.
+	 */
+	public void remove(int slot) {
+		cells.putSlotAt(xs[slot], ys[slot], -1);
+
+		int last = --size;
+		if(slot != last) {
+			xs[slot] = xs[last];
+			ys[slot] = ys[last];
+			energies[slot] = energies[last];
+			cells.putSlotUnindexed(xs[slot], ys[slot], slot);
+		}
+	}
+
+	/**
+	 * Moves the rabbit of the slot to a cell which must be free
+	 */
+	public void move(int slot, int newX, int newY) {
+		cells.putSlotAt(xs[slot], ys[slot], -1);
+		cells.putSlotAt(newX, newY, slot);
+		xs[slot] = newX;
+		ys[slot] = newY;
+	}
+
+	/**
+	 * Moves the rabbit of the slot to a cell which must be free, without
+	 * updating the free cell index, so that tiles stepped in parallel can move
+	 * rabbits in disjoint parts of the grid. The index must then be updated
+	 * with syncFreeCell.
+	 */
+	public void moveUnindexed(int slot, int newX, int newY) {
+		cells.putSlotUnindexed(xs[slot], ys[slot], -1);
+		cells.putSlotUnindexed(newX, newY, slot);
+		xs[slot] = newX;
+		ys[slot] = newY;
+	}
+
+	/**
+	 * Takes the rabbit of the slot off its cell without updating the free
+	 * cell index. The rabbit stays in its slot until removeDetached is called.
+	 */
+	public void leaveCellUnindexed(int slot) {
+		cells.putSlotUnindexed(xs[slot], ys[slot], -1);
+	}
+
+	/**
+	 * Updates the free cell index so that it matches the content of the cell
+	 */
+	public void syncFreeCell(int x, int y) {
+		cells.syncFreeCell(x, y);
+	}
+
+	/**
+	 * Removes all the rabbits with a negative energy, which must already have
+	 * left their cell with leaveCellUnindexed. The slots are scanned from the
+	 * end so that the rabbit moved into a freed slot was already checked.
+	 */
+	public void removeDetached() {
+		for(int slot = size - 1; slot >= 0; --slot) {
+			if(energies[slot] >= 0)
+				continue;
+
+			int last = --size;
+			if(slot != last) {
+				xs[slot] = xs[last];
+				ys[slot] = ys[last];
+				energies[slot] = energies[last];
+				cells.putSlotUnindexed(xs[slot], ys[slot], slot);
+			}
+		}
+	}
+
+	/**
+	 * Writes the rabbits in slot order, then the cells
+	 */
+	public void writeTo(MappedFile out) {
+		out.putInt(size);
+		out.putInts(xs, 0, size);
+		out.putInts(ys, 0, size);
+		out.putInts(energies, 0, size);
+		cells.writeTo(out);
+	}
+
+	/**
+	 * Overwrites the population with one of the same size written by writeTo
+	 */
+	public void readFrom(MappedFile in) {
+		size = in.getInt();
+		int capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, size)) * 2);
+		xs = new int[capacity];
+		ys = new int[capacity];
+		energies = new int[capacity];
+		in.getInts(xs, 0, size);
+		in.getInts(ys, 0, size);
+		in.getInts(energies, 0, size);
+		cells.readFrom(in);
+	}
+
+	/**
+	 * Shuffles the rabbits in place (Fisher-Yates), so that iterating over
+	 * the slots visits them in a random order
+	 */
+	public void shuffle(SplittableRandom random) {
+		for(int i = size - 1; i > 0; --i) {
+			int j = random.nextInt(i + 1);
+			if(i != j)
+				swap(i, j);
+		}
+	}
+
+	private void swap(int i, int j) {
+		int x = xs[i];
+		int y = ys[i];
+		int energy = energies[i];
+		xs[i] = xs[j];
+		ys[i] = ys[j];
+		energies[i] = energies[j];
+		xs[j] = x;
+		ys[j] = y;
+		energies[j] = energy;
+
+		cells.putSlotUnindexed(xs[i], ys[i], i);
+		cells.putSlotUnindexed(xs[j], ys[j], j);
+	}
+}
@@ -0,0 +1,120 @@
+import java.util.SplittableRandom;
+
+/**
+ * Class that runs one rabbits grass simulation without any Repast object,
+ * so that it can be stepped by the Repast model as well as by headless
+ * runners. All its state comes from its own parameters and random generators.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class RabbitsGrassSimulation {
+
+	private final RabbitsGrassSimulationParameters parameters;
+	private final RabbitsGrassSimulationSpace space;
+	private final SimulationRandom random;
+	private final TiledStepper tiledStepper; // null when stepping sequentially
+
+	private long tick = 0;
+
+	public RabbitsGrassSimulation(RabbitsGrassSimulationParameters parameters) {
+		this(parameters, true);
+	}
+
+	private RabbitsGrassSimulation(RabbitsGrassSimulationParameters parameters, boolean spread) {
+		this.parameters = new RabbitsGrassSimulationParameters(parameters);
+		space = new RabbitsGrassSimulationSpace(this.parameters);
+		random = new SimulationRandom(parameters.getSeed());
+		if(parameters.getTiles() > 1)
+			tiledStepper = new TiledStepper(space, parameters.getTiles(), random);
+		else
+			tiledStepper = null;
+
+		if(!spread)
+			return;
+
+		SplittableRandom setupRandom = random.forTick(0);
+		space.spreadGrass(parameters.getNumInitGrass(), setupRandom);
+		space.spreadRabbits(parameters.getNumInitRabbits(), setupRandom);
+	}
+
+	/**
+	 * Writes the parameters, the tick and the space. The random generators
+	 * only depend on the seed and the tick, so they need no state.
+	 */
+	public void writeTo(MappedFile out) {
+		parameters.writeTo(out);
+		out.putLong(tick);
+		space.writeTo(out);
+	}
+
+	/**
+	 * Reads a simulation written by writeTo, after its parameters which are
+	 * replaced by the given ones (of the same GridSize)
+	 */
+	static RabbitsGrassSimulation readFrom(MappedFile in, RabbitsGrassSimulationParameters parameters) {
+		RabbitsGrassSimulation simulation = new RabbitsGrassSimulation(parameters, false);
+		simulation.tick = in.getLong();
+		simulation.space.readFrom(in);
+		return simulation;
+	}
+
+	public RabbitsGrassSimulationParameters getParameters() {
+		return parameters;
+	}
+
+	public RabbitsGrassSimulationSpace getSpace() {
+		return space;
+	}
+
+	public long getTick() {
+		return tick;
+	}
+
+	public int getRabbitNb() {
+		return space.getRabbitNb();
+	}
+
+	public int getGrassNb() {
+		return space.getGrassNb();
+	}
+
+	/**
+	 * Steps every rabbit once, then grows the grass and places the newborn rabbits
+	 */
+	public void step() {
+		++tick;
+		SplittableRandom tickRandom = random.forTick(tick);
+
+		int nbOfBirth;
+		if(tiledStepper != null)
+			nbOfBirth = tiledStepper.step(tick, parameters.getBirthThreshold());
+		else
+			nbOfBirth = stepSequentially(tickRandom);
+
+		space.spreadGrass(parameters.getGrassGrowthRate(), tickRandom);
+		space.spreadRabbits(nbOfBirth, tickRandom);
+	}
+
+	private int stepSequentially(SplittableRandom tickRandom) {
+		int birthThreshold = parameters.getBirthThreshold();
+		int nbOfBirth = 0;
+		RabbitPopulation rabbits = space.getRabbits();
+		rabbits.shuffle(tickRandom);
+		for(int i = 0; i < rabbits.size(); i++){
+			space.stepRabbit(i, tickRandom);
+
+			if(rabbits.getEnergy(i) >= birthThreshold)
+			{
+				rabbits.addToEnergy(i, -birthThreshold);
+				++nbOfBirth;
+			}
+			if(rabbits.getEnergy(i) < 0)
+			{
+				// The last rabbit is moved in slot i, so step it next
+				space.removeRabbit(i);
+				--i;
+			}
+		}
+		return nbOfBirth;
+	}
+}
@@ -9,28 +9,24 @@ import uchicago.src.sim.gui.SimGraphics;
 
 /**
  * Class that implements the simulation agent for the rabbits grass simulation.
+ * The state of the rabbits is stored in the RabbitPopulation: an agent is only
+ * a copy of the state of one rabbit, created to draw or probe it.
 
  * @author Piccione Andrea, Juppet Quentin
  */
 
 public class RabbitsGrassSimulationAgent implements Drawable {
 
-	public static int INIT_ENERGY = 50;
-	public static int EAT_ENERGY = 20;
-	public static int MOVE_ENERGY = 1;
-	public static int STARVING_ENERGY = 1;
-
 	private static BufferedImage rabbitPicture = null;
 	
-	private int x;
-	private int y;
-	private int energy = INIT_ENERGY;
-	
-	private RabbitsGrassSimulationSpace space;
+	private final int x;
+	private final int y;
+	private final int energy;
 	
-	public RabbitsGrassSimulationAgent(RabbitsGrassSimulationSpace space, int x, int y) {
-		this.space = space;
-		setXY(x, y);
+	public RabbitsGrassSimulationAgent(int x, int y, int energy) {
+		this.x = x;
+		this.y = y;
+		this.energy = energy;
 	}
 
 	public void draw(SimGraphics graphics) {
@@ -44,11 +40,6 @@ public class RabbitsGrassSimulationAgent implements Drawable {
 		}
 	}
 
-	public void setXY(int newX, int newY) {
-		x = newX;
-		y = newY;
-	}
-	
 	public int getX() {
 		return x;
 	}
@@ -60,50 +51,4 @@ public class RabbitsGrassSimulationAgent implements Drawable {
 	public int getEnergy() {
 		return energy;
 	}
-	
-	public void addToEnergy(int toAdd) {
-		energy += toAdd;
-	}
-
-	public void step() {
-		move();
-		eatGrass();
-	}
-	
-	private void move() {
-		int dx = 0;
-		int dy = 0;
-
-		int direction = (int)(Math.random() * 4);
-
-		switch(direction) {
-		case 0: //Top
-			dy = -1;
-			break;
-		case 1: //Right
-			dx = 1;
-			break;
-		case 2: //Bottom
-			dy = 1;
-			break;
-		case 3: //Left
-			dx = -1;
-			break;
-		}
-
-		int newX = x + dx;
-		int newY = y + dy;
-
-		if(space.moveRabbit(x, y, newX, newY)) {
-			addToEnergy(-MOVE_ENERGY);
-		}
-	}
-
-	private void eatGrass() {
-		if(space.eatGrassAt(x, y)) {
-			addToEnergy(EAT_ENERGY);
-		}else {
-			addToEnergy(-STARVING_ENERGY);
-		}
-	}
 }
@@ -1,5 +1,5 @@
 import java.awt.Color;
-import java.util.ArrayList;
+import java.nio.file.Paths;
 
 import uchicago.src.reflector.RangePropertyDescriptor;
 import uchicago.src.sim.analysis.DataSource;
@@ -11,8 +11,8 @@ import uchicago.src.sim.engine.SimModelImpl;
 import uchicago.src.sim.gui.ColorMap;
 import uchicago.src.sim.gui.DisplaySurface;
 import uchicago.src.sim.gui.Object2DDisplay;
+import uchicago.src.sim.gui.SimGraphics;
 import uchicago.src.sim.gui.Value2DDisplay;
-import uchicago.src.sim.util.SimUtilities;
 import uchicago.src.sim.engine.SimInit;
 
 /**
@@ -21,33 +21,68 @@ import uchicago.src.sim.engine.SimInit;
  * order to run Repast simulation. It manages the entire RePast
  * environment and the simulation.
  *
+ * In batch mode the model is headless: no display or chart is built and the
+ * number of rabbits and grass is streamed to OutputFile at every tick
+ * until MaxTicks is reached. With SteadyStateWindow greater than 0, a batch
+ * run also stops as soon as a SteadyStateDetector finds that the rabbits died
+ * out, filled the grid or settled into a fixed point or a periodic orbit;
+ * the reason is printed. Windows below SteadyStateDetector.MIN_WINDOW are
+ * raised to it.
+ *
+ * The simulation itself is a RabbitsGrassSimulation built from the
+ * parameters of this model. All its random numbers come from RngSeed, so a
+ * run is repeatable. With Tiles greater than 1, the rabbits are stepped in
+ * parallel by a TiledStepper and the run depends on RngSeed and Tiles.
+ * With PerceptionRadius greater than 0, rabbits move towards the nearest
+ * grass they see instead of walking at random.
+ *
+ * If RestoreFile is set, the run starts from that SimulationCheckpoint,
+ * with the parameters of the model (which must have the same GridSize).
+ * If CheckpointFile is set, a checkpoint is saved at the end of the run.
+ *
+ * With the GUI, the display and the chart are painted by a DisplayRenderer
+ * on its own thread, at most FrameRate times per second, from snapshots of
+ * the simulation. The simulation does not wait for the painting. As the
+ * snapshots and the display hold every cell, the GridSize slider of the GUI
+ * stops at MAX_DISPLAY_GRID_SIZE; batch runs go up to
+ * RabbitsGrassSimulationSpace.MAX_GRID_SIZE, with chunked layers above
+ * RabbitsGrassSimulationSpace.DENSE_MAX_CELLS cells.
+ *
  * @author Piccione Andrea, Juppet Quentin
  */
 
 
 public class RabbitsGrassSimulationModel extends SimModelImpl {		
 
-	private static int DEFAULT_GRID_SIZE = 20;
-	private static int DEFAULT_NUM_INIT_RABBITS = 5;
-	private static int DEFAULT_NUM_INIT_GRASS = 25;
-	private static int DEFAULT_GRASS_GROWTH_RATE = 10;
-	private static int DEFAULT_BIRTH_THRESHOLD = 75;
+	private static int DEFAULT_MAX_TICKS = 1000;
+	private static String DEFAULT_OUTPUT_FILE = "rabbits.csv";
+	private static int DEFAULT_FRAME_RATE = 25;
+	private static int MAX_DISPLAY_GRID_SIZE = 1000;
+	private static int CHART_INTERVAL = 10;
 
-	private int gridSize = DEFAULT_GRID_SIZE;
-	private int numInitRabbits = DEFAULT_NUM_INIT_RABBITS;
-	private int numInitGrass = DEFAULT_NUM_INIT_GRASS;
-	private int grassGrowthRate = DEFAULT_GRASS_GROWTH_RATE;
-	private int birthThreshold = DEFAULT_BIRTH_THRESHOLD;
+	private RabbitsGrassSimulationParameters parameters = new RabbitsGrassSimulationParameters();
+	private int maxTicks = DEFAULT_MAX_TICKS;
+	private String outputFile = DEFAULT_OUTPUT_FILE;
+	private int steadyStateWindow = 0;
+	private int frameRate = DEFAULT_FRAME_RATE;
+	private String checkpointFile = "";
+	private String restoreFile = "";
 
 	private Schedule schedule;
 
+	private boolean headless;
+	private int runNb = 0;
+	private PopulationSink populationSink;
+	private SteadyStateDetector steadyStateDetector;
+
+	private RabbitsGrassSimulation simulation;
 	private RabbitsGrassSimulationSpace space;
 
+	private DisplayRenderer renderer;
 	private DisplaySurface displaySurface;
+	private SnapshotChartModel chartModel;
 	private OpenSequenceGraph amountOfRabbitAndGrass;
 
-	private ArrayList<RabbitsGrassSimulationAgent> rabbitList;
-
 	public static void main(String[] args) {
 		SimInit init = new SimInit();
 		RabbitsGrassSimulationModel model = new RabbitsGrassSimulationModel();
@@ -63,21 +98,32 @@ public class RabbitsGrassSimulationModel extends SimModelImpl {
 	}
 
 	public void setup() {
+		if(renderer != null)
+			renderer.stop();
+		renderer = null;
+		simulation = null;
 		space = null;
-		rabbitList = new ArrayList<>();
 		schedule = new Schedule(1);
 
-		if(displaySurface != null)
-			displaySurface.dispose();
-		displaySurface = new DisplaySurface(this, getName());
-		registerDisplaySurface(displaySurface.getName(), displaySurface);
-		
-		if(amountOfRabbitAndGrass != null)
-			amountOfRabbitAndGrass.dispose();
-		amountOfRabbitAndGrass = new OpenSequenceGraph("Amount of rabbit and grass", this);
-		registerMediaProducer(amountOfRabbitAndGrass.getTitle(), amountOfRabbitAndGrass);
+		// The controller is set before setup is called
+		headless = getController() != null && getController().isBatch();
+
+		if(!headless) {
+			if(displaySurface != null)
+				displaySurface.dispose();
+			displaySurface = new DisplaySurface(this, getName());
+			registerDisplaySurface(displaySurface.getName(), displaySurface);
+
+			if(amountOfRabbitAndGrass != null)
+				amountOfRabbitAndGrass.dispose();
+			chartModel = new SnapshotChartModel(this);
+			amountOfRabbitAndGrass = new OpenSequenceGraph("Amount of rabbit and grass", chartModel);
+			registerMediaProducer(amountOfRabbitAndGrass.getTitle(), amountOfRabbitAndGrass);
+		}
 		
-		descriptors.put("GridSize", new RangePropertyDescriptor("GridSize", 0, 50, 10));
+		// The display copies and paints every cell, the chunked layers are for batch runs
+		int maxGridSize = headless ? RabbitsGrassSimulationSpace.MAX_GRID_SIZE : MAX_DISPLAY_GRID_SIZE;
+		descriptors.put("GridSize", new RangePropertyDescriptor("GridSize", 0, maxGridSize, maxGridSize / 5));
 		descriptors.put("NumInitRabbits", new RangePropertyDescriptor("NumInitRabbits", 0, 100, 20));
 		descriptors.put("NumInitGrass", new RangePropertyDescriptor("NumInitGrass", 0, 100, 20));
 		descriptors.put("GrassGrowthRate", new RangePropertyDescriptor("GrassGrowthRate", 0, 50, 10));
@@ -86,85 +132,163 @@ public class RabbitsGrassSimulationModel extends SimModelImpl {
 		descriptors.put("EatGrassEnergy", new RangePropertyDescriptor("EatGrassEnergy", 0, 100, 20));
 		descriptors.put("MoveEnergy", new RangePropertyDescriptor("MoveEnergy", 0, 100, 20));
 		descriptors.put("StarvingEnergy", new RangePropertyDescriptor("StarvingEnergy", 0, 100, 20));
+		descriptors.put("MaxTicks", new RangePropertyDescriptor("MaxTicks", 0, 10000, 2000));
+		descriptors.put("SteadyStateWindow", new RangePropertyDescriptor("SteadyStateWindow", 0, 2000, 500));
+		descriptors.put("Tiles", new RangePropertyDescriptor("Tiles", 1, 16, 2));
+		descriptors.put("PerceptionRadius", new RangePropertyDescriptor("PerceptionRadius", 0, GrassLayer.MAX_RADIUS, 5));
+		descriptors.put("FrameRate", new RangePropertyDescriptor("FrameRate", 1, 60, 10));
 	}
 	
 	public void begin(){
 		buildModel();
 		buildSchedule();
-		buildDisplay();
 
-		displaySurface.display();
-		amountOfRabbitAndGrass.display();
+		if(headless) {
+			// All the runs of a batch go to the same file
+			++runNb;
+			populationSink = PopulationSink.open(outputFile, runNb > 1);
+			if(steadyStateWindow > 0) {
+				int gridSize = parameters.getGridSize();
+				steadyStateDetector = new SteadyStateDetector((long)gridSize * gridSize, steadyStateWindow);
+			} else {
+				steadyStateDetector = null;
+			}
+		} else {
+			buildDisplay();
+
+			displaySurface.display();
+			amountOfRabbitAndGrass.display();
+			renderer.start();
+		}
 	}
 
 	public void buildModel(){
-		space = new RabbitsGrassSimulationSpace(gridSize);
-		space.spreadGrass(numInitGrass);
-		rabbitList.addAll(space.spreadRabbits(numInitRabbits));
+		parameters.setSeed(getRngSeed());
+		if(restoreFile.isEmpty())
+			simulation = new RabbitsGrassSimulation(parameters);
+		else
+			simulation = SimulationCheckpoint.restore(Paths.get(restoreFile), parameters);
+		space = simulation.getSpace();
 	}
 
 	public void buildSchedule(){
 		class SimulationStep extends BasicAction {
 			public void execute() {
-				int nbOfBirth = 0;
-				SimUtilities.shuffle(rabbitList);
-				for(int i = 0; i < rabbitList.size(); i++){
-					RabbitsGrassSimulationAgent rabbit = rabbitList.get(i);
-					rabbit.step();
-
-					if(rabbit.getEnergy() >= birthThreshold)
-					{
-						rabbit.addToEnergy(-birthThreshold);
-						++nbOfBirth;
-					}
-					if(rabbit.getEnergy() < 0)
-					{
-						space.removeRabbitAt(rabbit.getX(), rabbit.getY());
-						rabbitList.remove(rabbit);
-						--i;
+				simulation.step();
+
+				if(headless) {
+					populationSink.record(simulation.getTick(), space.getRabbitNb(), space.getGrassNb());
+					if(steadyStateDetector != null
+							&& steadyStateDetector.add(simulation.getTick(), space.getRabbitNb(), space.getGrassNb()) != null) {
+						System.out.println("Run " + runNb + " stopped at tick " + simulation.getTick() + ": "
+								+ steadyStateDetector.getReason());
+						stop();
 					}
-				}
-
-				space.spreadGrass(grassGrowthRate);
-				rabbitList.addAll(space.spreadRabbits(nbOfBirth));
-
-				displaySurface.updateDisplay();
+				} else
+					renderer.publish(simulation, false);
 			}
 		}
 
 		schedule.scheduleActionBeginning(0, new SimulationStep());
 
-		class AmoutOfRabbitAndGrassChartStep extends BasicAction {
-			public void execute(){
-				amountOfRabbitAndGrass.step();
+		if(!checkpointFile.isEmpty()) {
+			class SaveCheckpointStep extends BasicAction {
+				public void execute() {
+					SimulationCheckpoint.save(simulation, Paths.get(checkpointFile));
+				}
 			}
+
+			schedule.scheduleActionAtEnd(new SaveCheckpointStep());
 		}
 
-		schedule.scheduleActionAtInterval(10, new AmoutOfRabbitAndGrassChartStep());
+		if(headless) {
+			class CloseSinkStep extends BasicAction {
+				public void execute() {
+					populationSink.close();
+				}
+			}
+
+			schedule.scheduleActionAtEnd(new CloseSinkStep());
+
+			class StopStep extends BasicAction {
+				public void execute() {
+					stop();
+				}
+			}
+
+			if(maxTicks > 0)
+				schedule.scheduleActionAt(maxTicks, new StopStep(), Schedule.LAST);
+		} else {
+			class LastFrameStep extends BasicAction {
+				public void execute() {
+					renderer.publish(simulation, true);
+				}
+			}
+
+			// Paint the final state even if no frame was due
+			schedule.scheduleActionAtEnd(new LastFrameStep());
+		}
 	}
 	
 
 	public void buildDisplay(){
+		// The chart gets one point every CHART_INTERVAL ticks of the painted snapshots,
+		// at the tick of the snapshot, whatever the frame rate
+		class PaintStep implements Runnable {
+			private long chartTick = 0;
+
+			public void run() {
+				displaySurface.updateDisplay();
+				long tick = renderer.getSnapshot().getTick();
+				if(tick / CHART_INTERVAL > chartTick / CHART_INTERVAL) {
+					chartTick = tick;
+					amountOfRabbitAndGrass.step();
+				}
+			}
+		}
+
+		renderer = new DisplayRenderer(space.getSizeX(), space.getSizeY(), frameRate, new PaintStep());
+		chartModel.setRenderer(renderer);
+
 		ColorMap grassMap = new ColorMap();
 
 		grassMap.mapColor(0, Color.WHITE); //No grass
 		grassMap.mapColor(1, Color.GREEN); //Grass
 
-		Value2DDisplay displayGrass = new Value2DDisplay(space.getGrassGrid(), grassMap);
+		// Swing may repaint on its own thread, the displays draw one snapshot the renderer keeps meanwhile
+		class GrassDisplay extends Value2DDisplay {
+			GrassDisplay(ColorMap map) {
+				super(new GrassSnapshotDisplay(renderer), map);
+			}
 
-		Object2DDisplay displayRabbits = new Object2DDisplay(space.getRabbitGrid());
-		displayRabbits.setObjectList(rabbitList);
+			public void drawDisplay(SimGraphics graphics) {
+				renderer.paint(() -> super.drawDisplay(graphics));
+			}
+		}
+		Value2DDisplay displayGrass = new GrassDisplay(grassMap);
+
+		class RabbitDisplay extends Object2DDisplay {
+			RabbitDisplay() {
+				super(new RabbitSnapshotDisplay(renderer));
+			}
+
+			public void drawDisplay(SimGraphics graphics) {
+				renderer.paint(() -> super.drawDisplay(graphics));
+			}
+		}
+		Object2DDisplay displayRabbits = new RabbitDisplay();
 
 		displaySurface.addDisplayable(displayGrass, "Grass");
 		displaySurface.addDisplayableProbeable(displayRabbits, "Rabbits");
 		
+		// The chart is sampled on the render thread, from the painted snapshot
 		class RabbitInSpace implements DataSource, Sequence {
 			public Object execute() {
 				return new Double(getSValue());
 			}
 
 			public double getSValue() {
-				return (double)space.getRabbitNb();
+				return (double)renderer.getSnapshot().getRabbitNb();
 			}
 		}
 		amountOfRabbitAndGrass.addSequence("Rabbit number", new RabbitInSpace(), Color.GRAY);
@@ -175,7 +299,7 @@ public class RabbitsGrassSimulationModel extends SimModelImpl {
 			}
 
 			public double getSValue() {
-				return (double)space.getGrassNb();
+				return (double)renderer.getSnapshot().getGrassNb();
 			}
 		}
 		amountOfRabbitAndGrass.addSequence("Grass number", new GrassInSpace(), Color.GREEN);
@@ -189,79 +313,143 @@ public class RabbitsGrassSimulationModel extends SimModelImpl {
 	public String[] getInitParam() {
 		// Parameters to be set by users via the Repast UI slider bar
 		// Do "not" modify the parameters names provided in the skeleton code, you can add more if you want 
-		String[] params = { "GridSize", "NumInitRabbits", "NumInitGrass", "GrassGrowthRate", "BirthThreshold", "RabbitInitEnergy", "EatGrassEnergy", "MoveEnergy", "StarvingEnergy"};
+		String[] params = { "GridSize", "NumInitRabbits", "NumInitGrass", "GrassGrowthRate", "BirthThreshold", "RabbitInitEnergy", "EatGrassEnergy", "MoveEnergy", "StarvingEnergy", "MaxTicks", "SteadyStateWindow", "OutputFile", "Tiles", "PerceptionRadius", "FrameRate", "CheckpointFile", "RestoreFile"};
 		return params;
 	}
 
 	public int getGridSize() {
-		return gridSize;
+		return parameters.getGridSize();
 	}
 
 	public void setGridSize(int newSize) {
-		gridSize = newSize;
+		parameters.setGridSize(newSize);
 	}
 
 	public int getNumInitRabbits() {
-		return numInitRabbits;
+		return parameters.getNumInitRabbits();
 	}
 
 	public void setNumInitRabbits(int newNum) {
-		numInitRabbits = newNum;
+		parameters.setNumInitRabbits(newNum);
 	}
 
 	public int getNumInitGrass() {
-		return numInitGrass;
+		return parameters.getNumInitGrass();
 	}
 
 	public void setNumInitGrass(int newNum) {
-		numInitGrass = newNum;
+		parameters.setNumInitGrass(newNum);
 	}
 
 	public int getGrassGrowthRate() {
-		return grassGrowthRate;
+		return parameters.getGrassGrowthRate();
 	}
 
 	public void setGrassGrowthRate(int newRate) {
-		grassGrowthRate = newRate;
+		parameters.setGrassGrowthRate(newRate);
 	}
 
 	public int getBirthThreshold() {
-		return birthThreshold;
+		return parameters.getBirthThreshold();
 	}
 
 	public void setBirthThreshold(int newThreshold) {
-		birthThreshold = newThreshold;
+		parameters.setBirthThreshold(newThreshold);
+	}
+
+	public int getMaxTicks() {
+		return maxTicks;
+	}
+
+	public void setMaxTicks(int newMaxTicks) {
+		maxTicks = newMaxTicks;
+	}
+
+	public int getSteadyStateWindow() {
+		return steadyStateWindow;
+	}
+
+	public void setSteadyStateWindow(int newWindow) {
+		steadyStateWindow = newWindow;
+	}
+
+	public int getTiles() {
+		return parameters.getTiles();
+	}
+
+	public void setTiles(int newTiles) {
+		parameters.setTiles(newTiles);
+	}
+
+	public int getFrameRate() {
+		return frameRate;
+	}
+
+	public void setFrameRate(int newFrameRate) {
+		frameRate = newFrameRate;
+	}
+
+	public String getCheckpointFile() {
+		return checkpointFile;
+	}
+
+	public void setCheckpointFile(String newCheckpointFile) {
+		checkpointFile = newCheckpointFile;
+	}
+
+	public String getRestoreFile() {
+		return restoreFile;
+	}
+
+	public void setRestoreFile(String newRestoreFile) {
+		restoreFile = newRestoreFile;
+	}
+
+	public int getPerceptionRadius() {
+		return parameters.getPerceptionRadius();
+	}
+
+	public void setPerceptionRadius(int newRadius) {
+		parameters.setPerceptionRadius(newRadius);
+	}
+
+	public String getOutputFile() {
+		return outputFile;
+	}
+
+	public void setOutputFile(String newOutputFile) {
+		outputFile = newOutputFile;
 	}
 
 	public int getRabbitInitEnergy() {
-		return RabbitsGrassSimulationAgent.INIT_ENERGY;
+		return parameters.getInitEnergy();
 	}
 	
 	public void setRabbitInitEnergy(int energy) {
-		RabbitsGrassSimulationAgent.INIT_ENERGY = energy;
+		parameters.setInitEnergy(energy);
 	}
 
 	public int getEatGrassEnergy() {
-		return RabbitsGrassSimulationAgent.EAT_ENERGY;
+		return parameters.getEatEnergy();
 	}
 	
 	public void setEatGrassEnergy(int energy) {
-		RabbitsGrassSimulationAgent.EAT_ENERGY = energy;
+		parameters.setEatEnergy(energy);
 	}
 
 	public int getMoveEnergy() {
-		return RabbitsGrassSimulationAgent.MOVE_ENERGY;
+		return parameters.getMoveEnergy();
 	}
 	
 	public void setMoveEnergy(int energy) {
-		RabbitsGrassSimulationAgent.MOVE_ENERGY = energy;
+		parameters.setMoveEnergy(energy);
 	}
 
 	public int getStarvingEnergy() {
-		return RabbitsGrassSimulationAgent.STARVING_ENERGY;
+		return parameters.getStarvingEnergy();
 	}
 	
 	public void setStarvingEnergy(int energy) {
-		RabbitsGrassSimulationAgent.STARVING_ENERGY = energy;
+		parameters.setStarvingEnergy(energy);
 	}
 }
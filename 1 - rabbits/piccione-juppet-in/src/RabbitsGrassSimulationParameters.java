@@ -0,0 +1,212 @@
+/**
+ * Class that holds the parameters of one rabbits grass simulation.
+ * Each model or batch run has its own instance, so concurrent runs with
+ * different energy settings do not interfere.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class RabbitsGrassSimulationParameters {
+
+	/**
+	 * Names of the integer parameters, as shown in the Repast UI
+	 */
+	public static final String[] NAMES = { "GridSize", "NumInitRabbits", "NumInitGrass", "GrassGrowthRate",
+			"BirthThreshold", "RabbitInitEnergy", "EatGrassEnergy", "MoveEnergy", "StarvingEnergy", "Tiles",
+			"PerceptionRadius" };
+
+	private int gridSize = 20;
+	private int numInitRabbits = 5;
+	private int numInitGrass = 25;
+	private int grassGrowthRate = 10;
+	private int birthThreshold = 75;
+	private int initEnergy = 50;
+	private int eatEnergy = 20;
+	private int moveEnergy = 1;
+	private int starvingEnergy = 1;
+	private int tiles = 1;
+	private int perceptionRadius = 0;
+	private long seed = 0;
+
+	public RabbitsGrassSimulationParameters() {
+	}
+
+	public RabbitsGrassSimulationParameters(RabbitsGrassSimulationParameters other) {
+		gridSize = other.gridSize;
+		numInitRabbits = other.numInitRabbits;
+		numInitGrass = other.numInitGrass;
+		grassGrowthRate = other.grassGrowthRate;
+		birthThreshold = other.birthThreshold;
+		initEnergy = other.initEnergy;
+		eatEnergy = other.eatEnergy;
+		moveEnergy = other.moveEnergy;
+		starvingEnergy = other.starvingEnergy;
+		tiles = other.tiles;
+		perceptionRadius = other.perceptionRadius;
+		seed = other.seed;
+	}
+
+	/**
+	 * Returns the value of the integer parameter of the given name
+	 * @throws IllegalArgumentException if the name is unknown
+	 */
+	public int get(String name) {
+		switch(name) {
+		case "GridSize": return gridSize;
+		case "NumInitRabbits": return numInitRabbits;
+		case "NumInitGrass": return numInitGrass;
+		case "GrassGrowthRate": return grassGrowthRate;
+		case "BirthThreshold": return birthThreshold;
+		case "RabbitInitEnergy": return initEnergy;
+		case "EatGrassEnergy": return eatEnergy;
+		case "MoveEnergy": return moveEnergy;
+		case "StarvingEnergy": return starvingEnergy;
+		case "Tiles": return tiles;
+		case "PerceptionRadius": return perceptionRadius;
+		default: throw new IllegalArgumentException("Unknown parameter " + name);
+		}
+	}
+
+	/**
+	 * Sets the integer parameter of the given name
+	 * @throws IllegalArgumentException if the name is unknown
+	 */
+	public void set(String name, int value) {
+		switch(name) {
+		case "GridSize": gridSize = value; break;
+		case "NumInitRabbits": numInitRabbits = value; break;
+		case "NumInitGrass": numInitGrass = value; break;
+		case "GrassGrowthRate": grassGrowthRate = value; break;
+		case "BirthThreshold": birthThreshold = value; break;
+		case "RabbitInitEnergy": initEnergy = value; break;
+		case "EatGrassEnergy": eatEnergy = value; break;
+		case "MoveEnergy": moveEnergy = value; break;
+		case "StarvingEnergy": starvingEnergy = value; break;
+		case "Tiles": tiles = value; break;
+		case "PerceptionRadius": perceptionRadius = value; break;
+		default: throw new IllegalArgumentException("Unknown parameter " + name);
+		}
+	}
+
+	/**
+	 * Writes the number of integer parameters, their values in the order of
+	 * NAMES and the seed
+	 */
+	public void writeTo(MappedFile out) {
+		out.putInt(NAMES.length);
+		for(String name : NAMES)
+			out.putInt(get(name));
+		out.putLong(seed);
+	}
+
+	/**
+	 * Overwrites the parameters with ones written by writeTo
+	 */
+	public void readFrom(MappedFile in) {
+		int parameterNb = in.getInt();
+		if(parameterNb != NAMES.length)
+			throw new IllegalArgumentException("Expected " + NAMES.length + " parameters, found " + parameterNb);
+		for(String name : NAMES)
+			set(name, in.getInt());
+		seed = in.getLong();
+	}
+
+	public int getGridSize() {
+		return gridSize;
+	}
+
+	public void setGridSize(int gridSize) {
+		this.gridSize = gridSize;
+	}
+
+	public int getNumInitRabbits() {
+		return numInitRabbits;
+	}
+
+	public void setNumInitRabbits(int numInitRabbits) {
+		this.numInitRabbits = numInitRabbits;
+	}
+
+	public int getNumInitGrass() {
+		return numInitGrass;
+	}
+
+	public void setNumInitGrass(int numInitGrass) {
+		this.numInitGrass = numInitGrass;
+	}
+
+	public int getGrassGrowthRate() {
+		return grassGrowthRate;
+	}
+
+	public void setGrassGrowthRate(int grassGrowthRate) {
+		this.grassGrowthRate = grassGrowthRate;
+	}
+
+	public int getBirthThreshold() {
+		return birthThreshold;
+	}
+
+	public void setBirthThreshold(int birthThreshold) {
+		this.birthThreshold = birthThreshold;
+	}
+
+	public int getInitEnergy() {
+		return initEnergy;
+	}
+
+	public void setInitEnergy(int initEnergy) {
+		this.initEnergy = initEnergy;
+	}
+
+	public int getEatEnergy() {
+		return eatEnergy;
+	}
+
+	public void setEatEnergy(int eatEnergy) {
+		this.eatEnergy = eatEnergy;
+	}
+
+	public int getMoveEnergy() {
+		return moveEnergy;
+	}
+
+	public void setMoveEnergy(int moveEnergy) {
+		this.moveEnergy = moveEnergy;
+	}
+
+	public int getStarvingEnergy() {
+		return starvingEnergy;
+	}
+
+	public void setStarvingEnergy(int starvingEnergy) {
+		this.starvingEnergy = starvingEnergy;
+	}
+
+	public int getTiles() {
+		return tiles;
+	}
+
+	public void setTiles(int tiles) {
+		this.tiles = tiles;
+	}
+
+	/**
+	 * Returns the radius within which rabbits see grass and move towards it,
+	 * 0 for a random walk
+	 */
+	public int getPerceptionRadius() {
+		return perceptionRadius;
+	}
+
+	public void setPerceptionRadius(int perceptionRadius) {
+		this.perceptionRadius = perceptionRadius;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+}
@@ -1,120 +1,207 @@
-import java.util.ArrayList;
-
-import uchicago.src.sim.space.Object2DGrid;
+import java.util.SplittableRandom;
 
 /**
  * Class that implements the simulation space of the rabbits grass simulation.
+ * Cells are identified by y * sizeX + x in the free cells of both layers.
+ * Grids of more than DENSE_MAX_CELLS cells are stored in chunks, so that the
+ * cells of very large and sparse worlds only use memory where there is grass
+ * or rabbits.
  * @author Piccione Andrea, Juppet Quentin
  */
 
 public class RabbitsGrassSimulationSpace {
 
-	private Object2DGrid grassGrid;
-	private Object2DGrid rabbitGrid;
-	
-	private int rabbitNb = 0;
-	private int grassNb = 0;
+	public static final long DENSE_MAX_CELLS = 1L << 24;
+	public static final int MAX_GRID_SIZE = 100000;
 
-	public RabbitsGrassSimulationSpace(int size) {
-		grassGrid = new Object2DGrid(size, size);
-		rabbitGrid = new Object2DGrid(size, size);
+	private GrassLayer grassLayer;
+	private RabbitPopulation rabbits;
+	
+	private RabbitsGrassSimulationParameters parameters;
+	private int sizeX;
+	private int sizeY;
 
-		for(int i = 0; i < size; i++){
-			for(int j = 0; j < size; j++){
-				grassGrid.putObjectAt(i,j, new Integer(0));
-			}
+	public RabbitsGrassSimulationSpace(RabbitsGrassSimulationParameters parameters) {
+		this.parameters = parameters;
+		int size = parameters.getGridSize();
+		sizeX = size;
+		sizeY = size;
+		if(isChunked()) {
+			grassLayer = new ChunkedGrassLayer(size, size);
+			rabbits = new RabbitPopulation(new ChunkedRabbitCells(size, size));
+		}else {
+			grassLayer = new DenseGrassLayer(size, size);
+			rabbits = new RabbitPopulation(new DenseRabbitCells(size, size));
 		}
 	}
 
-	public void spreadGrass(int numGrass) {
-		int maxGrassNb = grassGrid.getSizeX() * grassGrid.getSizeY();
+	/**
+	 * Returns true if the layers are stored in chunks
+	 */
+	public boolean isChunked() {
+		return (long)sizeX * sizeY > DENSE_MAX_CELLS;
+	}
+
+	/**
+	 * Returns the width of the chunks of the layers, 1 if they are dense
+	 */
+	public int getChunkSize() {
+		return isChunked() ? ChunkedGrassLayer.CHUNK_SIZE : 1;
+	}
+
+	public void spreadGrass(int numGrass, SplittableRandom random) {
 		for(int i = 0; i < numGrass; ++i) {
-			if(grassNb < maxGrassNb) {
-				int x, y;
-				do {
-					x = (int)(Math.random()*(grassGrid.getSizeX()));
-					y = (int)(Math.random()*(grassGrid.getSizeY()));
-				}while(isGrassAt(x, y));
-
-				grassGrid.putObjectAt(x, y, new Integer(1));
-				++grassNb;
-			}
+			long cell = grassLayer.getRandomFreeCell(random);
+			if(cell < 0)
+				break; // The grid is full of grass
+
+			grassLayer.putGrassAt((int)(cell % sizeX), (int)(cell / sizeX));
 		}
 	}
 
-	public ArrayList<RabbitsGrassSimulationAgent> spreadRabbits(int numRabbits) {
-		int maxRabbitNb = rabbitGrid.getSizeX() * rabbitGrid.getSizeY();
-		ArrayList<RabbitsGrassSimulationAgent> rabbitList = new ArrayList<>();
+	public void spreadRabbits(int numRabbits, SplittableRandom random) {
 		for(int i = 0; i < numRabbits; ++i) {
-			if(rabbitNb < maxRabbitNb) {
-				int x, y;
-				do {
-					x = (int)(Math.random()*(rabbitGrid.getSizeX()));
-					y = (int)(Math.random()*(rabbitGrid.getSizeY()));
-				}while(getRabbitAt(x, y) != null);
-				
-				RabbitsGrassSimulationAgent rabbit = new RabbitsGrassSimulationAgent(this, x, y);
-				rabbitList.add(rabbit);
-				rabbitGrid.putObjectAt(x, y, rabbit);
-				++rabbitNb;
-			}
+			long cell = rabbits.getRandomFreeCell(random);
+			if(cell < 0)
+				break; // The grid is full of rabbits
+
+			rabbits.add((int)(cell % sizeX), (int)(cell / sizeX), parameters.getInitEnergy());
 		}
-		return rabbitList;
 	}
 
-	public Object2DGrid getGrassGrid() {
-		return grassGrid;
+	public void writeTo(MappedFile out) {
+		grassLayer.writeTo(out);
+		rabbits.writeTo(out);
 	}
 
-	public Object2DGrid getRabbitGrid() {
-		return rabbitGrid;
+	/**
+	 * Overwrites the space with one of the same size written by writeTo
+	 */
+	public void readFrom(MappedFile in) {
+		grassLayer.readFrom(in);
+		rabbits.readFrom(in);
+	}
+
+	public RabbitsGrassSimulationParameters getParameters() {
+		return parameters;
+	}
+
+	public GrassLayer getGrassLayer() {
+		return grassLayer;
+	}
+
+	public RabbitPopulation getRabbits() {
+		return rabbits;
+	}
+
+	public int getSizeX() {
+		return sizeX;
+	}
+
+	public int getSizeY() {
+		return sizeY;
 	}
 	
 	public int getGrassNb() {
-		return grassNb;
+		return grassLayer.getGrassNb();
 	}
 	
 	public int getRabbitNb() {
-		return rabbitNb;
+		return rabbits.size();
 	}
 	
 	public boolean eatGrassAt(int x, int y) {
-		if(isGrassAt(x, y)) {
-			grassGrid.putObjectAt(x, y, new Integer(0));
-			--grassNb;
-			return true;
-		}
-		return false;
+		return grassLayer.removeGrassAt(x, y);
 	}
 
 	public boolean isGrassAt(int x, int y) {
-		Integer isGrass = (Integer)grassGrid.getObjectAt(x, y);
-		return isGrass.intValue() == 1;
+		return grassLayer.isGrassAt(x, y);
 	}
 	
 	public RabbitsGrassSimulationAgent getRabbitAt(int x, int y) {
-		Object rabbit = rabbitGrid.getObjectAt(x, y);
-		if(rabbit == null) return null;
-		return (RabbitsGrassSimulationAgent)rabbit;
+		int slot = rabbits.getSlotAt(x, y);
+		if(slot < 0) return null;
+		return new RabbitsGrassSimulationAgent(x, y, rabbits.getEnergy(slot));
 	}
 
-	public void removeRabbitAt(int x, int y) {
-		rabbitGrid.putObjectAt(x, y, null);
-		--rabbitNb;
+	/**
+	 * Removes the rabbit of the slot. The last rabbit of the population takes its slot.
+	 */
+	public void removeRabbit(int slot) {
+		rabbits.remove(slot);
 	}
 	
-	public boolean moveRabbit(int x, int y, int newX, int newY) {
-		newX = (newX + rabbitGrid.getSizeX()) % rabbitGrid.getSizeX();
-		newY = (newY + rabbitGrid.getSizeY()) % rabbitGrid.getSizeY();
+	public boolean moveRabbit(int slot, int newX, int newY) {
+		newX = (newX + sizeX) % sizeX;
+		newY = (newY + sizeY) % sizeY;
 		
-		if(getRabbitAt(newX, newY) == null) {
-			RabbitsGrassSimulationAgent rabbit = getRabbitAt(x, y);
-			rabbitGrid.putObjectAt(x, y, null);
-			rabbitGrid.putObjectAt(newX, newY, rabbit);
-			rabbit.setXY(newX, newY);
-			
+		if(rabbits.getSlotAt(newX, newY) < 0) {
+			rabbits.move(slot, newX, newY);
 			return true;
 		}
 		return false;
 	}
+
+	/**
+	 * Returns the direction in which the rabbit on the cell moves: 0 to 3
+	 * for top, right, bottom and left, or -1 to stay.
+	 * With a perception radius of 0 the direction is random. Otherwise the
+	 * rabbit stays on grass, goes towards the nearest grass it sees, or
+	 * moves at random if it sees none.
+	 */
+	public int chooseDirection(int x, int y, SplittableRandom random) {
+		int radius = Math.min(parameters.getPerceptionRadius(), GrassLayer.MAX_RADIUS);
+		if(radius <= 0)
+			return random.nextInt(4);
+
+		long offset = grassLayer.findNearestGrass(x, y, radius, random);
+		if(offset == GrassLayer.NO_GRASS_NEAR)
+			return random.nextInt(4);
+
+		int dx = GrassLayer.offsetX(offset);
+		int dy = GrassLayer.offsetY(offset);
+		if(dx == 0 && dy == 0)
+			return -1;
+		if(Math.abs(dx) >= Math.abs(dy))
+			return dx > 0 ? 1 : 3;
+		return dy > 0 ? 2 : 0;
+	}
+
+	/**
+	 * Moves the rabbit of the slot in the direction given by chooseDirection
+	 * and lets it eat
+	 */
+	public void stepRabbit(int slot, SplittableRandom random) {
+		int dx = 0;
+		int dy = 0;
+
+		int direction = chooseDirection(rabbits.getX(slot), rabbits.getY(slot), random);
+
+		switch(direction) {
+		case 0: //Top
+			dy = -1;
+			break;
+		case 1: //Right
+			dx = 1;
+			break;
+		case 2: //Bottom
+			dy = 1;
+			break;
+		case 3: //Left
+			dx = -1;
+			break;
+		}
+
+		int x = rabbits.getX(slot);
+		int y = rabbits.getY(slot);
+		if(moveRabbit(slot, x + dx, y + dy)) {
+			rabbits.addToEnergy(slot, -parameters.getMoveEnergy());
+		}
+
+		if(eatGrassAt(rabbits.getX(slot), rabbits.getY(slot))) {
+			rabbits.addToEnergy(slot, parameters.getEatEnergy());
+		}else {
+			rabbits.addToEnergy(slot, -parameters.getStarvingEnergy());
+		}
+	}
 }
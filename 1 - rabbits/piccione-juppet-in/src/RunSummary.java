@@ -0,0 +1,141 @@
+import java.util.Arrays;
+
+/**
+ * Class that summarizes the populations of one run, tick after tick:
+ * extinction tick, mean and variance of both populations (Welford's online
+ * algorithm) and oscillation period of the rabbit population, and why the
+ * run stopped.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class RunSummary {
+
+	private long tickNb = 0;
+	private long extinctionTick = -1;
+
+	private double rabbitMean = 0;
+	private double rabbitM2 = 0;
+	private double grassMean = 0;
+	private double grassM2 = 0;
+
+	private int[] rabbitSeries = new int[256];
+
+	private String stopReason = "MAX_TICKS";
+	private long stopTick = -1;
+
+	public void add(long tick, int rabbitNb, int grassNb) {
+		if(tickNb == rabbitSeries.length)
+			rabbitSeries = Arrays.copyOf(rabbitSeries, rabbitSeries.length * 2);
+		rabbitSeries[(int)tickNb] = rabbitNb;
+		++tickNb;
+
+		if(rabbitNb == 0 && extinctionTick < 0)
+			extinctionTick = tick;
+
+		double delta = rabbitNb - rabbitMean;
+		rabbitMean += delta / tickNb;
+		rabbitM2 += delta * (rabbitNb - rabbitMean);
+
+		delta = grassNb - grassMean;
+		grassMean += delta / tickNb;
+		grassM2 += delta * (grassNb - grassMean);
+	}
+
+	/**
+	 * Records that the run stopped early, e.g. because a SteadyStateDetector
+	 * found nothing more to learn
+	 */
+	public void setStop(String reason, long tick) {
+		stopReason = reason;
+		stopTick = tick;
+	}
+
+	/**
+	 * Returns why the run stopped, MAX_TICKS if it went to the end
+	 */
+	public String getStopReason() {
+		return stopReason;
+	}
+
+	/**
+	 * Returns the tick at which the run stopped early, or -1
+	 */
+	public long getStopTick() {
+		return stopTick;
+	}
+
+	public long getTickNb() {
+		return tickNb;
+	}
+
+	/**
+	 * Returns the first tick without rabbits, or -1 if they never died out
+	 */
+	public long getExtinctionTick() {
+		return extinctionTick;
+	}
+
+	public double getRabbitMean() {
+		return rabbitMean;
+	}
+
+	public double getRabbitVariance() {
+		return tickNb > 1 ? rabbitM2 / (tickNb - 1) : 0;
+	}
+
+	public double getGrassMean() {
+		return grassMean;
+	}
+
+	public double getGrassVariance() {
+		return tickNb > 1 ? grassM2 / (tickNb - 1) : 0;
+	}
+
+	/**
+	 * Returns the oscillation period of the rabbit population, or 0 if it
+	 * does not oscillate. The first half of the run is skipped as transient;
+	 * the period is the lag of the first peak of the autocorrelation of the
+	 * second half, once the autocorrelation has become negative.
+	 */
+	public int getRabbitPeriod() {
+		return period(rabbitSeries, (int)(tickNb / 2), (int)tickNb);
+	}
+
+	static int period(int[] series, int from, int to) {
+		int length = to - from;
+		if(length < 8)
+			return 0;
+
+		double mean = 0;
+		for(int i = from; i < to; ++i)
+			mean += series[i];
+		mean /= length;
+
+		double variance = 0;
+		for(int i = from; i < to; ++i)
+			variance += (series[i] - mean) * (series[i] - mean);
+		if(variance == 0)
+			return 0;
+
+		boolean wentNegative = false;
+		double previous = 1;
+		double current = autocorrelation(series, from, to, mean, variance, 1);
+		for(int lag = 1; lag < length / 2; ++lag) {
+			double next = autocorrelation(series, from, to, mean, variance, lag + 1);
+			if(current < 0)
+				wentNegative = true;
+			else if(wentNegative && current >= previous && current >= next && current > 0.1)
+				return lag;
+			previous = current;
+			current = next;
+		}
+		return 0;
+	}
+
+	static double autocorrelation(int[] series, int from, int to, double mean, double variance, int lag) {
+		double sum = 0;
+		for(int i = from; i + lag < to; ++i)
+			sum += (series[i] - mean) * (series[i + lag] - mean);
+		return sum / variance;
+	}
+}
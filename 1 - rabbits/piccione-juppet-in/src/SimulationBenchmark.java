@@ -0,0 +1,180 @@
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Benchmark of the headless rabbits grass simulation, to follow the cost of
+ * its main operations and judge changes of the grid representation:
+ *   step: ticks per second and bytes allocated per tick of a whole
+ *     simulation, for several grid sizes, rabbit densities and grass growth
+ *     rates (as a fraction of the cells per tick)
+ *   spreadGrass, spreadRabbits: nanoseconds per placement, filling an empty
+ *     grid up to the density
+ *   moveRabbit: nanoseconds per move, every rabbit trying a random direction
+ *
+ * Each measure is repeated for WARMUP_ROUNDS rounds, to let the JIT compile
+ * the code, then averaged over the given number of rounds. The allocation is
+ * measured on the benchmark thread, so the step is run without tiles.
+ *
+ * Usage: java SimulationBenchmark [rounds] [ticksPerRound]
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class SimulationBenchmark {
+
+	private static final int[] GRID_SIZES = { 50, 200, 1000 };
+	private static final double[] DENSITIES = { 0.01, 0.1 };
+	private static final double[] GROWTH_RATES = { 0.001, 0.01 };
+	private static final int WARMUP_ROUNDS = 3;
+
+	private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		int ticksPerRound = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+		System.out.println("step, " + rounds + " rounds of " + ticksPerRound + " ticks");
+		System.out.println("grid\tdensity\tgrowth\tticks/s\t\tbytes/tick");
+		for(int gridSize : GRID_SIZES) {
+			for(double density : DENSITIES) {
+				for(double growthRate : GROWTH_RATES) {
+					RabbitsGrassSimulationParameters parameters = parameters(gridSize, density, growthRate);
+					double[] result = benchmarkStep(parameters, rounds, ticksPerRound);
+					System.out.println(gridSize + "\t" + density + "\t" + growthRate + "\t"
+							+ format(result[0]) + "\t" + format(result[1]));
+				}
+			}
+		}
+
+		System.out.println();
+		System.out.println("grid\tdensity\tspreadGrass (ns)\tspreadRabbits (ns)\tmoveRabbit (ns)\tbytes/move");
+		for(int gridSize : GRID_SIZES) {
+			for(double density : DENSITIES) {
+				RabbitsGrassSimulationParameters parameters = parameters(gridSize, density, 0);
+				double spreadGrass = benchmarkSpread(parameters, rounds, true);
+				double spreadRabbits = benchmarkSpread(parameters, rounds, false);
+				double[] move = benchmarkMove(parameters, rounds);
+				System.out.println(gridSize + "\t" + density + "\t" + format(spreadGrass) + "\t\t\t"
+						+ format(spreadRabbits) + "\t\t\t" + format(move[0]) + "\t\t" + format(move[1]));
+			}
+		}
+	}
+
+	private static RabbitsGrassSimulationParameters parameters(int gridSize, double density, double growthRate) {
+		int cellNb = gridSize * gridSize;
+		RabbitsGrassSimulationParameters parameters = new RabbitsGrassSimulationParameters();
+		parameters.setGridSize(gridSize);
+		parameters.setNumInitRabbits(Math.max(1, (int)(cellNb * density)));
+		parameters.setNumInitGrass(cellNb / 4);
+		parameters.setGrassGrowthRate((int)Math.ceil(cellNb * growthRate));
+		parameters.setSeed(42);
+		return parameters;
+	}
+
+	/**
+	 * Returns the ticks per second and the bytes allocated per tick
+	 */
+	private static double[] benchmarkStep(RabbitsGrassSimulationParameters parameters, int rounds, int ticksPerRound) {
+		long totalTime = 0;
+		long totalBytes = 0;
+		for(int round = 0; round < WARMUP_ROUNDS + rounds; ++round) {
+			RabbitsGrassSimulation simulation = new RabbitsGrassSimulation(parameters);
+
+			long startBytes = allocatedBytes();
+			long startTime = System.nanoTime();
+			for(int tick = 0; tick < ticksPerRound; ++tick)
+				simulation.step();
+			long endTime = System.nanoTime();
+			long endBytes = allocatedBytes();
+
+			if(round >= WARMUP_ROUNDS) {
+				totalTime += endTime - startTime;
+				totalBytes += endBytes - startBytes;
+			}
+		}
+		long tickNb = (long)rounds * ticksPerRound;
+		return new double[] { tickNb * 1e9 / totalTime, totalBytes / (double)tickNb };
+	}
+
+	/**
+	 * Returns the nanoseconds per placement of grass or rabbits on an empty
+	 * grid, up to the number of initial rabbits
+	 */
+	private static double benchmarkSpread(RabbitsGrassSimulationParameters parameters, int rounds, boolean grass) {
+		int placementNb = parameters.getNumInitRabbits();
+		long totalTime = 0;
+		for(int round = 0; round < WARMUP_ROUNDS + rounds; ++round) {
+			RabbitsGrassSimulationSpace space = new RabbitsGrassSimulationSpace(parameters);
+			SplittableRandom random = new SplittableRandom(round);
+
+			long startTime = System.nanoTime();
+			if(grass)
+				space.spreadGrass(placementNb, random);
+			else
+				space.spreadRabbits(placementNb, random);
+			long endTime = System.nanoTime();
+
+			if(round >= WARMUP_ROUNDS)
+				totalTime += endTime - startTime;
+		}
+		return totalTime / (double)(rounds * (long)placementNb);
+	}
+
+	/**
+	 * Returns the nanoseconds and the bytes allocated per move
+	 */
+	private static double[] benchmarkMove(RabbitsGrassSimulationParameters parameters, int rounds) {
+		RabbitsGrassSimulationSpace space = new RabbitsGrassSimulationSpace(parameters);
+		SplittableRandom random = new SplittableRandom(42);
+		space.spreadRabbits(parameters.getNumInitRabbits(), random);
+		RabbitPopulation rabbits = space.getRabbits();
+		int[] dx = { 0, 1, 0, -1 };
+		int[] dy = { -1, 0, 1, 0 };
+
+		long totalTime = 0;
+		long totalBytes = 0;
+		for(int round = 0; round < WARMUP_ROUNDS + rounds; ++round) {
+			long startBytes = allocatedBytes();
+			long startTime = System.nanoTime();
+			for(int slot = 0; slot < rabbits.size(); ++slot) {
+				int direction = random.nextInt(4);
+				space.moveRabbit(slot, rabbits.getX(slot) + dx[direction], rabbits.getY(slot) + dy[direction]);
+			}
+			long endTime = System.nanoTime();
+			long endBytes = allocatedBytes();
+
+			if(round >= WARMUP_ROUNDS) {
+				totalTime += endTime - startTime;
+				totalBytes += endBytes - startBytes;
+			}
+		}
+		long moveNb = (long)rounds * rabbits.size();
+		return new double[] { totalTime / (double)moveNb, totalBytes / (double)moveNb };
+	}
+
+	/**
+	 * Returns the bytes allocated so far by the current thread, or 0 if the
+	 * JVM cannot measure them
+	 */
+	private static long allocatedBytes() {
+		if(THREADS == null)
+			return 0;
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static com.sun.management.ThreadMXBean threadBean() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(!(bean instanceof com.sun.management.ThreadMXBean))
+			return null;
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)bean;
+		if(!threads.isThreadAllocatedMemorySupported())
+			return null;
+		threads.setThreadAllocatedMemoryEnabled(true);
+		return threads;
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.1f", value);
+	}
+}
@@ -0,0 +1,71 @@
+import java.nio.file.Path;
+
+/**
+ * Class that saves a RabbitsGrassSimulation to a binary checkpoint file and
+ * restores it, so that a long run can be resumed or forked into many what-if
+ * continuations. The file is a magic number and a version, followed by what
+ * RabbitsGrassSimulation.writeTo writes: the parameters, the tick, then the
+ * layers and the rabbits as raw big-endian arrays, copied through
+ * memory-mapped windows by a MappedFile.
+ *
+ * A simulation restored with the parameters and seed of the checkpoint goes
+ * on exactly like the saved one.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class SimulationCheckpoint {
+
+	private static final int MAGIC = 0x52474350; // "RGCP"
+	private static final int VERSION = 2;
+
+	public static void save(RabbitsGrassSimulation simulation, Path path) {
+		try (MappedFile out = MappedFile.create(path)) {
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			simulation.writeTo(out);
+		}
+	}
+
+	/**
+	 * Returns the parameters of the simulation saved in the checkpoint
+	 */
+	public static RabbitsGrassSimulationParameters readParameters(Path path) {
+		try (MappedFile in = MappedFile.open(path)) {
+			return readHeader(in, path);
+		}
+	}
+
+	/**
+	 * Restores the simulation saved in the checkpoint
+	 */
+	public static RabbitsGrassSimulation restore(Path path) {
+		return restore(path, readParameters(path));
+	}
+
+	/**
+	 * Restores the simulation saved in the checkpoint with other parameters,
+	 * e.g. another seed or grass growth rate to fork a what-if continuation.
+	 * @throws IllegalArgumentException if the grid size is not the saved one
+	 */
+	public static RabbitsGrassSimulation restore(Path path, RabbitsGrassSimulationParameters parameters) {
+		try (MappedFile in = MappedFile.open(path)) {
+			RabbitsGrassSimulationParameters saved = readHeader(in, path);
+			if(saved.getGridSize() != parameters.getGridSize())
+				throw new IllegalArgumentException("The checkpoint " + path + " has a grid of size " + saved.getGridSize()
+						+ ", not " + parameters.getGridSize());
+			return RabbitsGrassSimulation.readFrom(in, parameters);
+		}
+	}
+
+	private static RabbitsGrassSimulationParameters readHeader(MappedFile in, Path path) {
+		if(in.getInt() != MAGIC)
+			throw new IllegalArgumentException(path + " is not a checkpoint");
+		int version = in.getInt();
+		if(version != VERSION)
+			throw new IllegalArgumentException("Unsupported checkpoint version " + version + " in " + path);
+
+		RabbitsGrassSimulationParameters parameters = new RabbitsGrassSimulationParameters();
+		parameters.readFrom(in);
+		return parameters;
+	}
+}
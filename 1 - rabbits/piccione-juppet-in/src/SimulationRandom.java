@@ -0,0 +1,47 @@
+import java.util.SplittableRandom;
+
+/**
+ * Class that provides the random generators of one simulation.
+ * Every generator is a SplittableRandom whose seed is derived from the
+ * simulation seed, the tick and the tile (if any) with the SplitMix64
+ * finalizer. Generators are never shared between threads, so parallel
+ * stepping does not contend, and a run only depends on its seed.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class SimulationRandom {
+
+	private final long seed;
+
+	public SimulationRandom(long seed) {
+		this.seed = seed;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Returns the generator of the sequential parts of a tick.
+	 * The tick 0 is used to build the model.
+	 */
+	public SplittableRandom forTick(long tick) {
+		return new SplittableRandom(mix64(seed + mix64(tick)));
+	}
+
+	/**
+	 * Returns the generator of a tile of a tick
+	 */
+	public SplittableRandom forTile(long tick, int tile) {
+		return new SplittableRandom(mix64(seed + mix64(tick) + mix64(tile + 1)));
+	}
+
+	/**
+	 * SplitMix64 finalizer, used to derive independent seeds
+	 */
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,85 @@
+import java.util.Arrays;
+
+/**
+ * Copy of the state of a RabbitsGrassSimulation at one tick, taken by the
+ * simulation thread so that it can be drawn by another thread while the
+ * simulation goes on. A snapshot is reused: capture overwrites it.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class SimulationSnapshot {
+
+	public static final int NO_RABBIT = Integer.MIN_VALUE;
+
+	private final int sizeX;
+	private final int sizeY;
+	private final byte[] grass;
+	private final int[] rabbitEnergies; // NO_RABBIT on the free cells
+
+	private long tick = -1;
+	private int rabbitNb;
+	private int grassNb;
+
+	public SimulationSnapshot(int sizeX, int sizeY) {
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		this.grass = new byte[sizeX * sizeY];
+		this.rabbitEnergies = new int[sizeX * sizeY];
+		Arrays.fill(rabbitEnergies, NO_RABBIT);
+	}
+
+	/**
+	 * Overwrites the snapshot with the current state of the simulation
+	 */
+	public void capture(RabbitsGrassSimulation simulation) {
+		RabbitsGrassSimulationSpace space = simulation.getSpace();
+		GrassLayer grassLayer = space.getGrassLayer();
+		for(int y = 0; y < sizeY; ++y) {
+			for(int x = 0; x < sizeX; ++x)
+				grass[y * sizeX + x] = (byte)grassLayer.getValueAt(x, y);
+		}
+
+		Arrays.fill(rabbitEnergies, NO_RABBIT);
+		RabbitPopulation rabbits = space.getRabbits();
+		for(int slot = 0; slot < rabbits.size(); ++slot)
+			rabbitEnergies[rabbits.getY(slot) * sizeX + rabbits.getX(slot)] = rabbits.getEnergy(slot);
+
+		tick = simulation.getTick();
+		rabbitNb = simulation.getRabbitNb();
+		grassNb = simulation.getGrassNb();
+	}
+
+	public int getSizeX() {
+		return sizeX;
+	}
+
+	public int getSizeY() {
+		return sizeY;
+	}
+
+	/**
+	 * Returns the tick of the snapshot, -1 if nothing was captured yet
+	 */
+	public long getTick() {
+		return tick;
+	}
+
+	public int getRabbitNb() {
+		return rabbitNb;
+	}
+
+	public int getGrassNb() {
+		return grassNb;
+	}
+
+	public int getGrassAt(int x, int y) {
+		return grass[y * sizeX + x];
+	}
+
+	/**
+	 * Returns the energy of the rabbit on the cell, or NO_RABBIT
+	 */
+	public int getRabbitEnergyAt(int x, int y) {
+		return rabbitEnergies[y * sizeX + x];
+	}
+}
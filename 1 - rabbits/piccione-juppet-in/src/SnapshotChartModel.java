@@ -0,0 +1,57 @@
+import uchicago.src.sim.engine.Schedule;
+import uchicago.src.sim.engine.SimModel;
+import uchicago.src.sim.engine.SimModelImpl;
+
+/**
+ * Model seen by a chart sampled on the render thread of a DisplayRenderer.
+ * An OpenSequenceGraph takes the x of its points from getTickCount, which
+ * is here the tick of the snapshot being painted rather than the tick the
+ * simulation has reached, so that the chart and the display show the same
+ * tick. Everything else comes from the model.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class SnapshotChartModel extends SimModelImpl {
+
+	private final SimModel model;
+	private DisplayRenderer renderer; // null before the display is built
+
+	public SnapshotChartModel(SimModel model) {
+		this.model = model;
+	}
+
+	/**
+	 * Sets the renderer whose snapshot gives the tick, before it is started
+	 */
+	public void setRenderer(DisplayRenderer renderer) {
+		this.renderer = renderer;
+	}
+
+	public double getTickCount() {
+		return renderer == null ? 0 : renderer.getSnapshot().getTick();
+	}
+
+	public String getPropertiesValues() {
+		return model.getPropertiesValues();
+	}
+
+	public String getName() {
+		return model.getName();
+	}
+
+	public String[] getInitParam() {
+		return model.getInitParam();
+	}
+
+	public Schedule getSchedule() {
+		return model.getSchedule();
+	}
+
+	public void setup() {
+		// The model sets itself up
+	}
+
+	public void begin() {
+		// The model begins itself
+	}
+}
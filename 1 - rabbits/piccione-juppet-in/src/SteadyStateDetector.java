@@ -0,0 +1,155 @@
+/**
+ * Class that watches the populations of a run, tick after tick, to tell when
+ * going on would not teach anything more:
+ *   EXTINCTION: there is no rabbit left, and none can be born
+ *   SATURATION: the rabbits fill the whole grid
+ *   FIXED_POINT: both populations were constant over the last window ticks
+ *   PERIODIC_ORBIT: both populations repeat themselves with the period that
+ *     RunSummary.period finds in the rabbit series of the last window ticks,
+ *     their autocorrelation at this lag being at least CORRELATION_THRESHOLD
+ * The window is kept in ring buffers and analysed every window / 4 ticks,
+ * so the cost per tick stays small. Windows shorter than MIN_WINDOW are too
+ * short to tell a period from noise and are raised to MIN_WINDOW, so that
+ * any positive SteadyStateWindow or steadyWindow setting is valid.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class SteadyStateDetector {
+
+	public enum Reason { EXTINCTION, SATURATION, FIXED_POINT, PERIODIC_ORBIT }
+
+	public static final double CORRELATION_THRESHOLD = 0.9;
+	public static final int MIN_WINDOW = 16;
+
+	private final long cellNb;
+	private final int window;
+	private final int[] rabbitRing;
+	private final int[] grassRing;
+	private final int[] rabbitSeries;
+	private final int[] grassSeries;
+
+	private long tickNb = 0;
+	private Reason reason = null;
+	private long detectionTick = -1;
+	private int period = 0;
+
+	public SteadyStateDetector(long cellNb, int window) {
+		if(window <= 0)
+			throw new IllegalArgumentException("The window must be positive, use no detector to run all the ticks: " + window);
+		window = Math.max(window, MIN_WINDOW);
+		this.cellNb = cellNb;
+		this.window = window;
+		rabbitRing = new int[window];
+		grassRing = new int[window];
+		rabbitSeries = new int[window];
+		grassSeries = new int[window];
+	}
+
+	/**
+	 * Adds the populations of a tick
+	 * @return the reason to stop the run, or null to go on
+	 */
+	public Reason add(long tick, int rabbitNb, int grassNb) {
+		if(reason != null)
+			return reason;
+
+		if(rabbitNb == 0)
+			return detect(Reason.EXTINCTION, tick);
+		if(rabbitNb >= cellNb)
+			return detect(Reason.SATURATION, tick);
+
+		int index = (int)(tickNb % window);
+		rabbitRing[index] = rabbitNb;
+		grassRing[index] = grassNb;
+		++tickNb;
+
+		if(tickNb >= window && tickNb % Math.max(1, window / 4) == 0)
+			analyseWindow(tick);
+		return reason;
+	}
+
+	/**
+	 * Returns the window actually used, at least MIN_WINDOW
+	 */
+	public int getWindow() {
+		return window;
+	}
+
+	/**
+	 * Returns the reason to stop the run, or null if none was detected
+	 */
+	public Reason getReason() {
+		return reason;
+	}
+
+	/**
+	 * Returns the tick at which the reason was detected, or -1
+	 */
+	public long getDetectionTick() {
+		return detectionTick;
+	}
+
+	/**
+	 * Returns the period of the orbit, 0 if the reason is not PERIODIC_ORBIT
+	 */
+	public int getPeriod() {
+		return period;
+	}
+
+	private void analyseWindow(long tick) {
+		// Oldest tick first
+		int oldest = (int)(tickNb % window);
+		for(int i = 0; i < window; ++i) {
+			rabbitSeries[i] = rabbitRing[(oldest + i) % window];
+			grassSeries[i] = grassRing[(oldest + i) % window];
+		}
+
+		boolean rabbitConstant = isConstant(rabbitSeries);
+		boolean grassConstant = isConstant(grassSeries);
+		if(rabbitConstant && grassConstant) {
+			detect(Reason.FIXED_POINT, tick);
+			return;
+		}
+		if(rabbitConstant)
+			return;
+
+		int lag = RunSummary.period(rabbitSeries, 0, window);
+		if(lag > 0 && correlation(rabbitSeries, lag) >= CORRELATION_THRESHOLD
+				&& (grassConstant || correlation(grassSeries, lag) >= CORRELATION_THRESHOLD)) {
+			period = lag;
+			detect(Reason.PERIODIC_ORBIT, tick);
+		}
+	}
+
+	private Reason detect(Reason detected, long tick) {
+		reason = detected;
+		detectionTick = tick;
+		return reason;
+	}
+
+	private static boolean isConstant(int[] series) {
+		for(int value : series) {
+			if(value != series[0])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Autocorrelation of the series at the lag, rescaled so that a series
+	 * that exactly repeats itself with this period gets 1
+	 */
+	private static double correlation(int[] series, int lag) {
+		int length = series.length;
+		double mean = 0;
+		for(int value : series)
+			mean += value;
+		mean /= length;
+
+		double variance = 0;
+		for(int value : series)
+			variance += (value - mean) * (value - mean);
+
+		return RunSummary.autocorrelation(series, 0, length, mean, variance, lag) * length / (length - lag);
+	}
+}
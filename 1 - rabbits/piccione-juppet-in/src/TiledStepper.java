@@ -0,0 +1,252 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Class that steps all the rabbits of the space in parallel, tile by tile.
+ *
+ * The torus is split in tilesX * tilesY tiles of at least 2x2 cells, with an
+ * even number of tiles (or a single one) along each axis. A rabbit only touches
+ * its cell and its 4-neighbourhood, so two tiles of the same colour of a 2x2
+ * checkerboard never touch the same cell. The four colours are stepped one
+ * after the other and the tiles of a colour are stepped in parallel.
+ * When the layers are stored in chunks, the tiles are aligned on chunks and
+ * at least 2 chunks wide, so two tiles stepped together never share a chunk.
+ * Rabbits that see grass read cells up to their perception radius away, so
+ * the tiles are then also wider than this radius.
+ *
+ * During the phases only the raw content of the layers is changed; the cells
+ * touched by a tile are logged and the free cell indexes are updated from
+ * these logs afterwards, in tile order. Each tile draws its random numbers
+ * from its own generator of the SimulationRandom, so a run only depends
+ * on the seed and on the number of tiles.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class TiledStepper {
+
+	private static final int PHASE_NB = 4;
+
+	private static final int[] DX = { 0, 1, 0, -1 }; // Top, Right, Bottom, Left
+	private static final int[] DY = { -1, 0, 1, 0 };
+
+	private final RabbitsGrassSimulationSpace space;
+	private final SimulationRandom random;
+
+	private final int tilesX;
+	private final int tilesY;
+	private final int[] tileOfColumn;
+	private final int[] tileOfRow;
+	private final Tile[] tiles;
+	private final int[][] phaseTiles;
+
+	private int birthThreshold;
+
+	public TiledStepper(RabbitsGrassSimulationSpace space, int tileNb, SimulationRandom random) {
+		this.space = space;
+		this.random = random;
+
+		int sizeX = space.getSizeX();
+		int sizeY = space.getSizeY();
+		int alignment = space.getChunkSize();
+		int minWidth = Math.min(space.getParameters().getPerceptionRadius(), GrassLayer.MAX_RADIUS) + 1;
+		tilesX = validTileNb(tileNb, sizeX, alignment, minWidth);
+		tilesY = validTileNb(tileNb, sizeY, alignment, minWidth);
+		tileOfColumn = tilesOfCells(sizeX, tilesX, alignment);
+		tileOfRow = tilesOfCells(sizeY, tilesY, alignment);
+
+		tiles = new Tile[tilesX * tilesY];
+		int[] phaseSizes = new int[PHASE_NB];
+		for(int i = 0; i < tiles.length; ++i) {
+			tiles[i] = new Tile(i);
+			++phaseSizes[colourOf(i)];
+		}
+
+		phaseTiles = new int[PHASE_NB][];
+		for(int phase = 0; phase < PHASE_NB; ++phase)
+			phaseTiles[phase] = new int[phaseSizes[phase]];
+		int[] filled = new int[PHASE_NB];
+		for(int i = 0; i < tiles.length; ++i) {
+			int colour = colourOf(i);
+			phaseTiles[colour][filled[colour]++] = i;
+		}
+	}
+
+	/**
+	 * Returns the number of tiles actually used along an axis for a requested
+	 * number: 1, or an even number of tiles at least 2 units of alignment
+	 * cells wide and at least minWidth cells wide
+	 */
+	public static int validTileNb(int requested, int size, int alignment, int minWidth) {
+		int minUnitNb = Math.max(2, (minWidth + alignment - 1) / alignment);
+		int tileNb = Math.min(requested, size / alignment / minUnitNb);
+		if(tileNb <= 1)
+			return 1;
+		return tileNb & ~1;
+	}
+
+	/**
+	 * Returns the tile of each cell along an axis. The axis is cut in units
+	 * of alignment cells (the last one taking the remaining cells) which are
+	 * spread evenly over the tiles.
+	 */
+	private static int[] tilesOfCells(int size, int tileNb, int alignment) {
+		int unitNb = Math.max(1, size / alignment);
+		int[] tileOfCell = new int[size];
+		for(int i = 0; i < size; ++i) {
+			int unit = Math.min(i / alignment, unitNb - 1);
+			tileOfCell[i] = (int)((long)unit * tileNb / unitNb);
+		}
+		return tileOfCell;
+	}
+
+	public int getTilesX() {
+		return tilesX;
+	}
+
+	public int getTilesY() {
+		return tilesY;
+	}
+
+	/**
+	 * Steps every rabbit once
+	 * @return the number of births
+	 */
+	public int step(long tick, int birthThreshold) {
+		this.birthThreshold = birthThreshold;
+
+		RabbitPopulation rabbits = space.getRabbits();
+		for(Tile tile : tiles)
+			tile.reset(tick);
+		for(int slot = 0; slot < rabbits.size(); ++slot)
+			tiles[tileOf(rabbits.getX(slot), rabbits.getY(slot))].addRabbit(slot);
+
+		for(int phase = 0; phase < PHASE_NB; ++phase)
+			IntStream.of(phaseTiles[phase]).parallel().forEach(i -> tiles[i].step());
+
+		GrassLayer grass = space.getGrassLayer();
+		int nbOfBirth = 0;
+		for(Tile tile : tiles) {
+			for(int i = 0; i < tile.touchedRabbitCellNb; i += 2)
+				rabbits.syncFreeCell(tile.touchedRabbitCells[i], tile.touchedRabbitCells[i + 1]);
+			for(int i = 0; i < tile.eatenGrassCellNb; i += 2)
+				grass.syncFreeCell(tile.eatenGrassCells[i], tile.eatenGrassCells[i + 1]);
+			nbOfBirth += tile.nbOfBirth;
+		}
+		rabbits.removeDetached();
+
+		return nbOfBirth;
+	}
+
+	private int tileOf(int x, int y) {
+		return tileOfRow[y] * tilesX + tileOfColumn[x];
+	}
+
+	private int colourOf(int tile) {
+		return (tile % tilesX & 1) | (tile / tilesX & 1) << 1;
+	}
+
+	private class Tile {
+		private final int index;
+		private SplittableRandom tileRandom;
+
+		private int[] slots = new int[16];
+		private int slotNb;
+
+		// Coordinates of the logged cells, as x, y pairs
+		private int[] touchedRabbitCells = new int[16];
+		private int touchedRabbitCellNb;
+		private int[] eatenGrassCells = new int[16];
+		private int eatenGrassCellNb;
+
+		private int nbOfBirth;
+
+		Tile(int index) {
+			this.index = index;
+		}
+
+		void reset(long tick) {
+			tileRandom = random.forTile(tick, index);
+			slotNb = 0;
+			touchedRabbitCellNb = 0;
+			eatenGrassCellNb = 0;
+			nbOfBirth = 0;
+		}
+
+		void addRabbit(int slot) {
+			if(slotNb == slots.length)
+				slots = Arrays.copyOf(slots, slotNb * 2);
+			slots[slotNb++] = slot;
+		}
+
+		void step() {
+			RabbitPopulation rabbits = space.getRabbits();
+			GrassLayer grass = space.getGrassLayer();
+			int sizeX = space.getSizeX();
+			int sizeY = space.getSizeY();
+			int moveEnergy = space.getParameters().getMoveEnergy();
+			int eatEnergy = space.getParameters().getEatEnergy();
+			int starvingEnergy = space.getParameters().getStarvingEnergy();
+
+			// Shuffle the rabbits of the tile (Fisher-Yates)
+			for(int i = slotNb - 1; i > 0; --i) {
+				int j = tileRandom.nextInt(i + 1);
+				int slot = slots[i];
+				slots[i] = slots[j];
+				slots[j] = slot;
+			}
+
+			for(int i = 0; i < slotNb; ++i) {
+				int slot = slots[i];
+				int x = rabbits.getX(slot);
+				int y = rabbits.getY(slot);
+
+				int direction = space.chooseDirection(x, y, tileRandom);
+				int newX = x;
+				int newY = y;
+				if(direction >= 0) {
+					newX = (x + DX[direction] + sizeX) % sizeX;
+					newY = (y + DY[direction] + sizeY) % sizeY;
+				}
+				if(rabbits.getSlotAt(newX, newY) < 0) {
+					rabbits.moveUnindexed(slot, newX, newY);
+					logRabbitCell(x, y);
+					logRabbitCell(newX, newY);
+					rabbits.addToEnergy(slot, -moveEnergy);
+					x = newX;
+					y = newY;
+				}
+
+				if(grass.removeGrassUnindexed(x, y)) {
+					logGrassCell(x, y);
+					rabbits.addToEnergy(slot, eatEnergy);
+				}else {
+					rabbits.addToEnergy(slot, -starvingEnergy);
+				}
+
+				if(rabbits.getEnergy(slot) >= birthThreshold) {
+					rabbits.addToEnergy(slot, -birthThreshold);
+					++nbOfBirth;
+				}
+				if(rabbits.getEnergy(slot) < 0) {
+					rabbits.leaveCellUnindexed(slot);
+					logRabbitCell(x, y);
+				}
+			}
+		}
+
+		private void logRabbitCell(int x, int y) {
+			if(touchedRabbitCellNb == touchedRabbitCells.length)
+				touchedRabbitCells = Arrays.copyOf(touchedRabbitCells, touchedRabbitCellNb * 2);
+			touchedRabbitCells[touchedRabbitCellNb++] = x;
+			touchedRabbitCells[touchedRabbitCellNb++] = y;
+		}
+
+		private void logGrassCell(int x, int y) {
+			if(eatenGrassCellNb == eatenGrassCells.length)
+				eatenGrassCells = Arrays.copyOf(eatenGrassCells, eatenGrassCellNb * 2);
+			eatenGrassCells[eatenGrassCellNb++] = x;
+			eatenGrassCells[eatenGrassCellNb++] = y;
+		}
+	}
+}
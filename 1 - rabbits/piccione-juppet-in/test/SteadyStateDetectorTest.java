@@ -0,0 +1,47 @@
+/**
+ * Checks that every positive steady state window is accepted, the windows
+ * below SteadyStateDetector.MIN_WINDOW being raised to it, and that such a
+ * detector still stops the runs it should.
+ *
+ * Usage: java SteadyStateDetectorTest (with the classes of src on the class path)
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class SteadyStateDetectorTest {
+
+	public static void main(String[] args) {
+		for(int window = 1; window < SteadyStateDetector.MIN_WINDOW; ++window) {
+			SteadyStateDetector detector = new SteadyStateDetector(400, window);
+			check(detector.getWindow() == SteadyStateDetector.MIN_WINDOW, "window " + window + " is raised to MIN_WINDOW");
+
+			// Constant populations are a fixed point once the window is full
+			SteadyStateDetector.Reason reason = null;
+			long tick = 0;
+			while(reason == null && tick < 10 * SteadyStateDetector.MIN_WINDOW)
+				reason = detector.add(++tick, 10, 50);
+			check(reason == SteadyStateDetector.Reason.FIXED_POINT, "window " + window + " finds the fixed point");
+			check(tick >= SteadyStateDetector.MIN_WINDOW, "window " + window + " waits for a full window");
+
+			check(new SteadyStateDetector(400, window).add(1, 0, 50) == SteadyStateDetector.Reason.EXTINCTION,
+					"window " + window + " finds the extinction");
+		}
+
+		check(new SteadyStateDetector(400, 500).getWindow() == 500, "larger windows are kept");
+		try {
+			new SteadyStateDetector(400, 0);
+			check(false, "window 0 is rejected");
+		} catch (IllegalArgumentException e) {
+			// Expected, 0 means no detector
+		}
+
+		RabbitsGrassSimulationParameters parameters = new RabbitsGrassSimulationParameters();
+		for(int window = 1; window < SteadyStateDetector.MIN_WINDOW; ++window)
+			ParameterSweep.runSimulation(parameters, 50, null, window);
+		System.out.println("SteadyStateDetectorTest passed");
+	}
+
+	private static void check(boolean condition, String description) {
+		if(!condition)
+			throw new AssertionError(description);
+	}
+}
@@ -18,14 +18,16 @@ import logist.topology.Topology.City;
 
 public class GreedyAgent implements ReactiveBehavior {
 
-    private int numActions;
-    private Agent myAgent;
+    private ProfitMetrics metrics;
 
     @Override
     public void setup(Topology topology, TaskDistribution td, Agent agent) {
 
-        this.numActions = 0;
-        this.myAgent = agent;
+        // A new setup replaces the metrics of the previous one
+        if (this.metrics != null) {
+            this.metrics.close();
+        }
+        this.metrics = new ProfitMetrics(agent);
     }
 
     @Override
@@ -46,10 +48,7 @@ public class GreedyAgent implements ReactiveBehavior {
             action = new Pickup(availableTask);
         }
 
-        if (numActions >= 1) {
-            System.out.println("The total profit after "+numActions+" actions is "+myAgent.getTotalProfit()+" (average profit: "+(myAgent.getTotalProfit() / (double)numActions)+")");
-        }
-        numActions++;
+        metrics.record(vehicle, action);
 
         return action;
     }
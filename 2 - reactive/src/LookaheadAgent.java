@@ -0,0 +1,68 @@
+import logist.agent.Agent;
+import logist.behavior.ReactiveBehavior;
+import logist.plan.Action;
+import logist.plan.Action.Move;
+import logist.plan.Action.Pickup;
+import logist.simulation.Vehicle;
+import logist.task.Task;
+import logist.task.TaskDistribution;
+import logist.topology.Topology;
+
+/**
+ * Class that implements a greedy agent that looks k steps ahead: it takes
+ * the action with the best expected reward minus cost over its next k
+ * actions, k being the horizon property (3 by default, 1 is the greedy
+ * choice of the best immediate reward). The choices are computed once in
+ * setup() from the ReactiveModel, that holds the distances, probabilities
+ * and rewards, so that act() is a table lookup. As logist only drives the
+ * first vehicle, the choices are computed for its cost per km and capacity.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class LookaheadAgent implements ReactiveBehavior {
+
+	private ReactiveModel model;
+	private Action[] actionForState; // Indexed by the states of the model
+	private ProfitMetrics metrics;
+
+	@Override
+	public void setup(Topology topology, TaskDistribution td, Agent agent) {
+
+		// Reads the number of actions to look ahead from the agents.xml file
+		int horizon = agent.readProperty("horizon", Integer.class, 3);
+
+		model = new ReactiveModel(topology, td);
+		// A new setup replaces the metrics of the previous one
+		if(metrics != null)
+			metrics.close();
+		metrics = new ProfitMetrics(agent);
+
+		actionForState = actionTable(new VehicleProfile(VehicleProfile.drivenVehicle(agent)), horizon);
+	}
+
+	/**
+	 * Returns one shared Move per state, null when the best action is the pickup
+	 */
+	private Action[] actionTable(VehicleProfile profile, int horizon) {
+		double[] values = new double[model.getStateNb()];
+		int[] policy = new int[model.getStateNb()];
+		model.lookahead(model.rewards(profile.getCostPerKm(), profile.getCapacity()), horizon, values, policy);
+
+		Action[] table = new Action[model.getStateNb()];
+		for(int state = 0; state < model.getStateNb(); ++state) {
+			int action = policy[state];
+			if(action != -1 && !model.isPickup(action))
+				table[state] = new Move(model.getCity(model.getActionCity(action)));
+		}
+		return table;
+	}
+
+	@Override
+	public Action act(Vehicle vehicle, Task availableTask) {
+		int to = availableTask == null ? model.getCityNb() : availableTask.deliveryCity.id;
+		Action move = actionForState[model.stateOf(vehicle.getCurrentCity().id, to)];
+		Action action = move == null ? new Pickup(availableTask) : move;
+		metrics.record(vehicle, action);
+		return action;
+	}
+}
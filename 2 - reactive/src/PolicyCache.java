@@ -0,0 +1,95 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * On-disk cache of the solved values and policies of the reactive agent.
+ * Each entry is a file named after the fingerprint of the ReactiveModel
+ * and of the solver settings, that holds:
+ *   MAGIC, VERSION, fingerprint, number of states,
+ *   the value of each state (doubles) and its best action (ints)
+ * and is read and written through memory mapping. An entry that does not
+ * have this exact header and length is stale, and is rebuilt.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class PolicyCache {
+
+	public static final int MAGIC = 0x52504f4c; // "RPOL"
+	public static final int VERSION = 2;
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+
+	private PolicyCache() {
+	}
+
+	/**
+	 * Returns the file of the entry of the given fingerprint in the directory
+	 */
+	public static Path fileOf(Path directory, long key) {
+		return directory.resolve("reactive-" + Long.toHexString(key) + ".policy");
+	}
+
+	/**
+	 * Fills the values and the policy from the file if it is a valid entry
+	 * for the key
+	 * @return false if there is no such entry
+	 */
+	public static boolean load(Path file, long key, double[] values, int[] policy) {
+		if(!Files.isRegularFile(file))
+			return false;
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if(channel.size() != sizeOf(values.length))
+				return false;
+
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != key
+					|| buffer.getInt() != values.length)
+				return false;
+
+			buffer.asDoubleBuffer().get(values);
+			buffer.position(buffer.position() + 8 * values.length);
+			buffer.asIntBuffer().get(policy);
+			return true;
+		} catch (IOException e) {
+			System.err.println("Cannot read the policy cache " + file + ": " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the entry of the key, replacing the file at once so that
+	 * concurrent setups never see a partial entry. Failing to write only
+	 * prints a warning, the agent then solves again next time.
+	 */
+	public static void save(Path file, long key, double[] values, int[] policy) {
+		try {
+			Path directory = file.toAbsolutePath().getParent();
+			Files.createDirectories(directory);
+			Path temporary = Files.createTempFile(directory, "reactive-", ".tmp");
+			try {
+				try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+					MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, sizeOf(values.length));
+					buffer.putInt(MAGIC).putInt(VERSION).putLong(key).putInt(values.length);
+					buffer.asDoubleBuffer().put(values);
+					buffer.position(buffer.position() + 8 * values.length);
+					buffer.asIntBuffer().put(policy);
+					buffer.force();
+				}
+				Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temporary);
+			}
+		} catch (IOException e) {
+			System.err.println("Cannot write the policy cache " + file + ": " + e.getMessage());
+		}
+	}
+
+	private static long sizeOf(int stateNb) {
+		return HEADER_SIZE + (long)stateNb * (8 + 4);
+	}
+}
@@ -0,0 +1,233 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import logist.agent.Agent;
+import logist.plan.Action;
+import logist.plan.ActionHandler;
+import logist.simulation.Vehicle;
+import logist.task.Task;
+import logist.topology.Topology.City;
+
+/**
+ * Profit telemetry of a reactive behavior: the number of actions and
+ * pickups, the total profit and a histogram of the profit per km of each
+ * action. act() records its action without allocating nor printing, and a
+ * background thread reports the metrics every metrics-interval ms (agent
+ * property, 10000 by default, 0 to only report at exit) on the console, or
+ * as CSV lines in the file metrics-file if it is set.
+ *
+ * The profit is kept from the actions themselves, as the platform computes
+ * it: a pickup earns the reward of the task, which is delivered right away,
+ * and every km costs the cost per km of the vehicle. All the metrics share
+ * one reporter thread and one shutdown hook.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class ProfitMetrics {
+
+	// Buckets of BUCKET_WIDTH per km from HISTOGRAM_MIN, plus one bucket
+	// below and one above
+	public static final int HISTOGRAM_MIN = -50;
+	public static final int BUCKET_WIDTH = 5;
+	public static final int BUCKET_NB = 40;
+
+	private static final ScheduledThreadPoolExecutor REPORTER = new ScheduledThreadPoolExecutor(1, runnable -> {
+		Thread thread = new Thread(runnable, "Metrics reporter");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static final Set<ProfitMetrics> OPEN = ConcurrentHashMap.newKeySet();
+
+	static {
+		REPORTER.setRemoveOnCancelPolicy(true);
+		// The platform does not tell the behaviors that the simulation ends
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			for(ProfitMetrics metrics : OPEN)
+				metrics.close();
+		}, "Metrics closer"));
+	}
+
+	private final Agent agent;
+	private final AtomicLongArray histogram = new AtomicLongArray(BUCKET_NB + 2);
+	private final ScheduledFuture<?> reportTask; // null if only reported at exit
+
+	// Written by one thread at a time, the one that calls act()
+	private volatile long actionNb = 0;
+	private volatile long pickupNb = 0;
+	private volatile double profit = 0;
+
+	// Profit and distance of the action being recorded, set by the handler
+	private final Handler handler = new Handler();
+	private City from;
+	private double actionProfit;
+	private double actionDistance;
+
+	private BufferedWriter writer; // null to report on the console
+	private boolean closed = false;
+
+	public ProfitMetrics(Agent agent) {
+		this.agent = agent;
+
+		int interval = agent.readProperty("metrics-interval", Integer.class, 10000);
+		String file = agent.readProperty("metrics-file", String.class, "");
+		if(!file.isEmpty()) {
+			try {
+				writer = new BufferedWriter(new FileWriter(file));
+				writer.write(header());
+				writer.newLine();
+			} catch (IOException e) {
+				System.err.println("Cannot write the metrics to " + file + ", using the console: " + e.getMessage());
+				writer = null;
+			}
+		}
+
+		OPEN.add(this);
+		reportTask = interval > 0 ? REPORTER.scheduleAtFixedRate(this::report, interval, interval, TimeUnit.MILLISECONDS) : null;
+	}
+
+	/**
+	 * Records the action that the vehicle is about to take, from its current city
+	 */
+	public void record(Vehicle vehicle, Action action) {
+		from = vehicle.getCurrentCity();
+		action.accept(handler);
+		double newProfit = profit + actionProfit - actionDistance * vehicle.costPerKm();
+		if(actionDistance > 0)
+			histogram.incrementAndGet(bucketOf((newProfit - profit) / actionDistance));
+		profit = newProfit;
+		++actionNb;
+	}
+
+	private class Handler implements ActionHandler<Void> {
+		public Void moveTo(City city) {
+			actionProfit = 0;
+			actionDistance = from.distanceTo(city);
+			return null;
+		}
+
+		public Void pickup(Task task) {
+			// In the reactive mode, the task is delivered right after its pickup
+			actionProfit = task.reward;
+			actionDistance = from.distanceTo(task.deliveryCity);
+			++pickupNb;
+			return null;
+		}
+
+		public Void deliver(Task task) {
+			actionProfit = 0;
+			actionDistance = 0;
+			return null;
+		}
+	}
+
+	public long getActionNb() {
+		return actionNb;
+	}
+
+	public long getPickupNb() {
+		return pickupNb;
+	}
+
+	public long getProfit() {
+		return Math.round(profit);
+	}
+
+	private static int bucketOf(double profitPerKm) {
+		if(profitPerKm < HISTOGRAM_MIN)
+			return 0;
+		int bucket = (int)((profitPerKm - HISTOGRAM_MIN) / BUCKET_WIDTH) + 1;
+		return Math.min(bucket, BUCKET_NB + 1);
+	}
+
+	/**
+	 * Returns the profit per km below which are the given fraction of the
+	 * actions, interpolated in its bucket
+	 */
+	private double quantile(long[] counts, long total, double fraction) {
+		double rank = fraction * total;
+		long below = 0;
+		for(int bucket = 0; bucket < counts.length; ++bucket) {
+			if(below + counts[bucket] >= rank && counts[bucket] > 0) {
+				if(bucket == 0)
+					return HISTOGRAM_MIN;
+				if(bucket == BUCKET_NB + 1)
+					return HISTOGRAM_MIN + BUCKET_NB * BUCKET_WIDTH;
+				return HISTOGRAM_MIN + (bucket - 1 + (rank - below) / counts[bucket]) * BUCKET_WIDTH;
+			}
+			below += counts[bucket];
+		}
+		return Double.NaN;
+	}
+
+	private synchronized void report() {
+		if(closed)
+			return;
+
+		long actions = actionNb;
+		long pickups = pickupNb;
+		long currentProfit = Math.round(profit);
+		long[] counts = new long[histogram.length()];
+		long total = 0;
+		for(int bucket = 0; bucket < counts.length; ++bucket) {
+			counts[bucket] = histogram.get(bucket);
+			total += counts[bucket];
+		}
+		double average = actions == 0 ? 0 : currentProfit / (double)actions;
+
+		if(writer == null) {
+			System.out.println("Agent " + agent.name() + ": total profit after " + actions + " actions ("
+					+ pickups + " pickups) is " + currentProfit + " (average profit: " + String.format("%.1f", average)
+					+ "), profit per km p10/p50/p90: " + String.format("%.1f/%.1f/%.1f", quantile(counts, total, 0.1),
+							quantile(counts, total, 0.5), quantile(counts, total, 0.9)));
+			return;
+		}
+
+		StringBuilder line = new StringBuilder();
+		line.append(System.currentTimeMillis()).append(',').append(actions).append(',').append(pickups)
+			.append(',').append(currentProfit).append(',').append(average);
+		for(long count : counts)
+			line.append(',').append(count);
+		try {
+			writer.write(line.toString());
+			writer.newLine();
+			writer.flush();
+		} catch (IOException e) {
+			System.err.println("Cannot write the metrics of agent " + agent.name() + ": " + e.getMessage());
+		}
+	}
+
+	private static String header() {
+		StringBuilder header = new StringBuilder("time,actions,pickups,profit,averageProfit,below" + HISTOGRAM_MIN);
+		for(int bucket = 0; bucket < BUCKET_NB; ++bucket)
+			header.append(",from").append(HISTOGRAM_MIN + bucket * BUCKET_WIDTH);
+		header.append(",from").append(HISTOGRAM_MIN + BUCKET_NB * BUCKET_WIDTH);
+		return header.toString();
+	}
+
+	/**
+	 * Writes a last report, stops the periodic ones and closes the file
+	 */
+	public synchronized void close() {
+		if(closed)
+			return;
+		report();
+		closed = true;
+		if(reportTask != null)
+			reportTask.cancel(false);
+		OPEN.remove(this);
+		if(writer != null) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				// Nothing more to report
+			}
+		}
+	}
+}
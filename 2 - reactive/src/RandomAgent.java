@@ -19,8 +19,7 @@ public class RandomAgent implements ReactiveBehavior {
 
 	private Random random;
 	private double pPickup;
-	private int numActions;
-	private Agent myAgent;
+	private ProfitMetrics metrics;
 
 	@Override
 	public void setup(Topology topology, TaskDistribution td, Agent agent) {
@@ -32,8 +31,10 @@ public class RandomAgent implements ReactiveBehavior {
 
 		this.random = new Random();
 		this.pPickup = discount;
-		this.numActions = 0;
-		this.myAgent = agent;
+		// A new setup replaces the metrics of the previous one
+		if (this.metrics != null)
+			this.metrics.close();
+		this.metrics = new ProfitMetrics(agent);
 	}
 
 	@Override
@@ -47,10 +48,7 @@ public class RandomAgent implements ReactiveBehavior {
 			action = new Pickup(availableTask);
 		}
 
-		if (numActions >= 1) {
-			System.out.println("The total profit after "+numActions+" actions is "+myAgent.getTotalProfit()+" (average profit: "+(myAgent.getTotalProfit() / (double)numActions)+")");
-		}
-		numActions++;
+		metrics.record(vehicle, action);
 
 		return action;
 	}
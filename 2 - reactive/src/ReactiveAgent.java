@@ -1,6 +1,9 @@
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import logist.agent.Agent;
 import logist.behavior.ReactiveBehavior;
@@ -11,119 +14,194 @@ import logist.simulation.Vehicle;
 import logist.task.Task;
 import logist.task.TaskDistribution;
 import logist.topology.Topology;
-import logist.topology.Topology.City;
 
 /**
- * Class that implements the reactive agent
+ * Class that implements the reactive agent. Logist only drives the first
+ * vehicle of a reactive agent, so the policy is solved for its cost per km
+ * and capacity and act() is only called for it.
  * @author Piccione Andrea, Juppet Quentin
  */
 
 public class ReactiveAgent implements ReactiveBehavior {
 
-	private HashMap<ReactiveState, City> bestActionForState;
-	private HashMap<ReactiveState, Double> bestScoreForState;
-	private HashSet<ReactiveState> possibleStates;
-	private HashMap<City, ArrayList<ReactiveState>> accessibleStatesForCity;
+	private static final double STOP_THRESHOLD = 1E-8;
+
+	private ReactiveModel model;
+	// Indexed by the states of the model. Replaced at once by the refreshes.
+	private volatile Action[] actionForState;
+	private String agentName;
+	private ProfitMetrics metrics;
+	private VehicleProfile profile;
+	private double[] values; // Of the last solved policy, the start of the next refresh
+
+	// Adaptive mode, statistics is null when it is off
+	private TaskStatistics statistics;
+	private int refreshInterval;
+	private double priorWeight;
+	private ExecutorService refresher;
+	private final AtomicBoolean refreshing = new AtomicBoolean(false);
+	private final Runnable refreshTask = this::refresh;
+
+	private double discount;
+	private String algorithm;
+	private int threads;
+	private int evaluationSweeps;
 
 	@Override
 	public void setup(Topology topology, TaskDistribution td, Agent agent) {
 
 		// Reads the discount factor from the agents.xml file.
 		// If the property is not present it defaults to 0.95
-		Double discount = agent.readProperty("discount-factor", Double.class,
+		discount = agent.readProperty("discount-factor", Double.class,
 				0.95);
 
-		//Init accessible states for a city
-		accessibleStatesForCity = new HashMap<Topology.City, ArrayList<ReactiveState>>();
-		for(City city : topology) {
-			accessibleStatesForCity.put(city, new ArrayList<ReactiveState>());
+		// Reads the algorithm that solves the MDP, value-iteration (the default),
+		// policy-iteration or prioritized-sweeping
+		algorithm = agent.readProperty("algorithm", String.class, "value-iteration");
+
+		// Number of threads of value iteration, 1 for the sequential in-place
+		// version and 0 for all the cores
+		threads = agent.readProperty("solver-threads", Integer.class, 1);
+
+		// Maximum number of evaluation sweeps after each improvement of policy iteration
+		evaluationSweeps = agent.readProperty("evaluation-sweeps", Integer.class, 10);
+
+		// Directory of the solved policies, none if empty
+		String cacheDirectory = agent.readProperty("policy-cache", String.class, "");
+
+		// In adaptive mode, the policies are solved again in the background every
+		// refresh-interval observed tasks, with the task probabilities estimated from
+		// the observations and the ones of the distribution counted as prior-weight
+		// observations
+		boolean adaptive = agent.readProperty("adaptive", Boolean.class, false);
+		refreshInterval = agent.readProperty("refresh-interval", Integer.class, 1000);
+		if(adaptive && refreshInterval < 1)
+			throw new IllegalArgumentException("The refresh-interval must be at least 1 task: " + refreshInterval);
+		priorWeight = agent.readProperty("prior-weight", Double.class, 50.0);
+		agentName = agent.name();
+		// A new setup replaces the metrics of the previous one
+		if(metrics != null)
+			metrics.close();
+		metrics = new ProfitMetrics(agent);
+
+		// Compile the MDP once, it is shared by the refreshes
+		model = new ReactiveModel(topology, td);
+
+		// The policy depends on the cost per km and capacity of the vehicle that logist drives
+		profile = new VehicleProfile(VehicleProfile.drivenVehicle(agent));
+		values = new double[model.getStateNb()];
+		actionForState = policyTable(cacheDirectory);
+
+		if(adaptive) {
+			statistics = new TaskStatistics(model);
+			refresher = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "Policy refresher of " + agentName);
+				thread.setDaemon(true);
+				return thread;
+			});
 		}
+	}
 
-		//Init possible states
-		possibleStates = new HashSet<ReactiveState>();
-		bestActionForState = new HashMap<ReactiveState, City>();
-		bestScoreForState = new HashMap<ReactiveState, Double>();
-		for(City from : topology) {
-			addState(from, null); // When in from and no task
-			possibleStates.add(new ReactiveState(from, null)); 
-			for(City to : topology) {
-				if(from != to)
-					addState(from, to); // When in from and there is a task for to
-			}
+	/**
+	 * Returns the action of each state for the profile of the vehicle, from
+	 * the cache if possible, and fills the values of the states
+	 */
+	private Action[] policyTable(String cacheDirectory) {
+		int[] policy = new int[model.getStateNb()];
+
+		long key = model.fingerprint(model.rewards(profile.getCostPerKm(), profile.getCapacity()), discount, STOP_THRESHOLD);
+		Path cacheFile = cacheDirectory.isEmpty() ? null : PolicyCache.fileOf(Paths.get(cacheDirectory), key);
+		if(cacheFile != null && PolicyCache.load(cacheFile, key, values, policy)) {
+			System.out.println("Agent " + agentName + " loaded its policy for " + profile + " from " + cacheFile);
+		}else {
+			solve(model, values, policy);
+			if(cacheFile != null)
+				PolicyCache.save(cacheFile, key, values, policy);
 		}
+		return actionTable(policy);
+	}
 
-		int costPerKm = agent.vehicles().get(0).costPerKm();
-
-		boolean keepUpdating = true;
-		double stopThreshold = 1E-8;
-
-		while(keepUpdating) {
-			keepUpdating = false;
-
-			for(ReactiveState state : possibleStates) {
-				//Init possible actions for the current state
-				//Can either move to a neighbor or pickup and then move to the delivery city
-				ArrayList<City> possibleActions = new ArrayList<City>();
-				possibleActions.addAll(state.getFrom().neighbors());
+	/**
+	 * Returns one shared Move per state, null when the best action is the pickup
+	 */
+	private Action[] actionTable(int[] policy) {
+		Action[] table = new Action[model.getStateNb()];
+		for(int state = 0; state < model.getStateNb(); ++state) {
+			int action = policy[state];
+			if(action != -1 && !model.isPickup(action))
+				table[state] = new Move(model.getCity(model.getActionCity(action)));
+		}
+		return table;
+	}
 
-				if(state.getTo() != null) { // If there is a task
-					possibleActions.add(state.getTo());
-				}
+	/**
+	 * Solves the policy again on the refresher thread with the task
+	 * probabilities learned so far, starting from the current values, then
+	 * replaces the table at once
+	 */
+	private void refresh() {
+		try {
+			ReactiveModel learned = model.withProbabilities(statistics.estimate(priorWeight));
+			int[] policy = new int[model.getStateNb()];
+			solve(learned, values, policy);
+			actionForState = actionTable(policy);
+		} catch (RuntimeException e) {
+			// Keep the current policy
+			System.err.println("Refreshing the policy of agent " + agentName + " failed: " + e);
+		} finally {
+			refreshing.set(false);
+		}
+	}
 
-				double bestScore = 0;
-				City bestAction = null;
-				for(City actionCity : possibleActions) {
-					double reward = 0;
-					if(actionCity.equals(state.getTo())) //Pick up so gain some reward
-						reward += td.reward(state.getFrom(), state.getTo());
-					reward -= state.getFrom().distanceTo(actionCity) * costPerKm; // Cost
-
-					double accumulatedScore = 0;
-					for(ReactiveState accessibleState : accessibleStatesForCity.get(actionCity)) {
-						accumulatedScore += td.probability(accessibleState.getFrom(), accessibleState.getTo())
-								* bestScoreForState.get(accessibleState);
-					}
-					double score = reward + discount * accumulatedScore;
-
-					if(bestAction == null || score > bestScore) {
-						bestScore = score;
-						bestAction = actionCity;
-					}
+	/**
+	 * Solves the model for the profile of the vehicle with the algorithm of the
+	 * agent, starting from the given values, and prints the work it took
+	 */
+	private void solve(ReactiveModel model, double[] values, int[] policy) {
+		double[] rewards = model.rewards(profile.getCostPerKm(), profile.getCapacity());
+		long startTime = System.nanoTime();
+		String work;
+		switch(algorithm) {
+		case "value-iteration":
+			int sweepNb;
+			if(threads == 1) {
+				sweepNb = model.valueIteration(rewards, discount, STOP_THRESHOLD, values, policy);
+			}else {
+				ForkJoinPool pool = new ForkJoinPool(threads <= 0 ? Runtime.getRuntime().availableProcessors() : threads);
+				try {
+					sweepNb = model.parallelValueIteration(rewards, discount, STOP_THRESHOLD, values, policy, pool);
+				} finally {
+					pool.shutdown();
 				}
-
-				if(bestScoreForState.get(state) - bestScore > stopThreshold)
-					keepUpdating = true;
-
-				bestScoreForState.put(state, bestScore);
-				bestActionForState.put(state, bestAction);
 			}
+			work = sweepNb + " sweeps";
+			break;
+		case "policy-iteration":
+			work = model.policyIteration(rewards, discount, STOP_THRESHOLD, evaluationSweeps, values, policy) + " sweeps";
+			break;
+		case "prioritized-sweeping":
+			int backupNb = model.prioritizedSweeping(rewards, discount, STOP_THRESHOLD, values, policy);
+			work = backupNb + " backups (" + String.format("%.1f", backupNb / (double)model.getStateNb()) + " sweeps)";
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown algorithm " + algorithm);
 		}
-	}
-
-	private void addState(City from, City to) {
-		ReactiveState state = new ReactiveState(from, to);
-		possibleStates.add(state);
-		bestScoreForState.put(state, 0.0);
-		accessibleStatesForCity.get(from).add(state);
+		System.out.println("The " + algorithm + " of agent " + agentName + " (" + profile + ") converged in " + work + ", "
+				+ (System.nanoTime() - startTime) / 1000000 + " ms");
 	}
 
 	@Override
 	public Action act(Vehicle vehicle, Task availableTask) {
-		ReactiveState state;
-		if (availableTask == null) {
-			state = new ReactiveState(vehicle.getCurrentCity(), null);
-		} else {
-			state = new ReactiveState(vehicle.getCurrentCity(), availableTask.deliveryCity);
-		}
-
-		Action action;
-		City bestAction = bestActionForState.get(state);
-		if(availableTask != null && bestAction.equals(availableTask.deliveryCity)) {
-			action = new Pickup(availableTask);
-		}else {
-			action = new Move(bestAction);
-		}
-
+		// No allocation nor hashing, except the Pickup that wraps the task
+		int to = availableTask == null ? model.getCityNb() : availableTask.deliveryCity.id;
+		int state = model.stateOf(vehicle.getCurrentCity().id, to);
+		if(statistics != null && model.exists(state) && statistics.observe(state) % refreshInterval == 0
+				&& refreshing.compareAndSet(false, true))
+			refresher.execute(refreshTask);
+
+		Action move = actionForState[state];
+		Action action = move == null ? new Pickup(availableTask) : move;
+		metrics.record(vehicle, action);
 		return action;
 	}
 }
@@ -0,0 +1,540 @@
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import logist.task.TaskDistribution;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+/**
+ * The MDP of the reactive agent compiled once into dense arrays.
+ * Cities are indexed by their id and the state (from, to) has the id
+ * from * (cityNb + 1) + to, where to is cityNb when no task is
+ * offered. The states from a city are thus contiguous, with their
+ * probabilities in the same order.
+ *
+ * The actions of a state are stored one after the other, as the city
+ * reached, whether it picks up the task and the reward, weight and
+ * distance of the action. A state with a task has the moves to every
+ * neighbor and then the pickup, which a vehicle can only choose if the
+ * weight of the task fits in its capacity (see rewards).
+ *
+ * In the reactive mode of the platform, a vehicle is offered at most one
+ * task at a time and delivers it right after the pickup, so it is always
+ * empty when it chooses an action: the load needs no state of its own.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class ReactiveModel {
+
+	private final City[] cities;
+	private final int cityNb;
+	private final int stateNb;
+
+	private final double[] probability; // Per state, 0 for the states that do not exist
+	private final int[] actionStart;    // Actions of state s in [actionStart[s], actionStart[s + 1])
+	private final int[] actionCity;
+	private final boolean[] actionPickup;
+	private final double[] actionTaskReward;
+	private final int[] actionTaskWeight;
+	private final double[] actionDistance;
+
+	public ReactiveModel(Topology topology, TaskDistribution td) {
+		List<City> cityList = topology.cities();
+		cityNb = cityList.size();
+		cities = cityList.toArray(new City[cityNb]);
+		stateNb = cityNb * (cityNb + 1);
+
+		probability = new double[stateNb];
+		actionStart = new int[stateNb + 1];
+		int actionNb = 0;
+		for(City from : cities) {
+			int neighborNb = from.neighbors().size();
+			for(int to = 0; to <= cityNb; ++to) {
+				if(to == from.id)
+					continue; // A task is never for the city it is offered in
+				City toCity = to == cityNb ? null : cities[to];
+				probability[stateOf(from.id, to)] = td.probability(from, toCity);
+				actionNb += neighborNb + (toCity == null ? 0 : 1);
+			}
+		}
+
+		actionCity = new int[actionNb];
+		actionPickup = new boolean[actionNb];
+		actionTaskReward = new double[actionNb];
+		actionTaskWeight = new int[actionNb];
+		actionDistance = new double[actionNb];
+		int action = 0;
+		for(int state = 0; state < stateNb; ++state) {
+			actionStart[state] = action;
+			City from = cities[state / (cityNb + 1)];
+			int to = state % (cityNb + 1);
+			if(to == from.id)
+				continue;
+
+			// Can either move to a neighbor or pickup and then move to the delivery city
+			for(City neighbor : from.neighbors())
+				action = addAction(action, from, neighbor, false, 0, 0);
+			if(to != cityNb)
+				action = addAction(action, from, cities[to], true, td.reward(from, cities[to]), td.weight(from, cities[to]));
+		}
+		actionStart[stateNb] = action;
+	}
+
+	/**
+	 * Creates a model with the transitions and rewards of the other one but
+	 * the given probability of each state
+	 */
+	private ReactiveModel(ReactiveModel other, double[] probability) {
+		cities = other.cities;
+		cityNb = other.cityNb;
+		stateNb = other.stateNb;
+		this.probability = probability;
+		actionStart = other.actionStart;
+		actionCity = other.actionCity;
+		actionPickup = other.actionPickup;
+		actionTaskReward = other.actionTaskReward;
+		actionTaskWeight = other.actionTaskWeight;
+		actionDistance = other.actionDistance;
+	}
+
+	/**
+	 * Returns a model that only differs from this one by the probability of
+	 * each state, which must be 0 for the states that do not exist
+	 */
+	public ReactiveModel withProbabilities(double[] probability) {
+		if(probability.length != stateNb)
+			throw new IllegalArgumentException("Expected " + stateNb + " probabilities, found " + probability.length);
+		return new ReactiveModel(this, probability);
+	}
+
+	private int addAction(int action, City from, City to, boolean pickup, double taskReward, int taskWeight) {
+		actionCity[action] = to.id;
+		actionPickup[action] = pickup;
+		actionTaskReward[action] = taskReward;
+		actionTaskWeight[action] = taskWeight;
+		actionDistance[action] = from.distanceTo(to);
+		return action + 1;
+	}
+
+	public int getCityNb() {
+		return cityNb;
+	}
+
+	public int getStateNb() {
+		return stateNb;
+	}
+
+	public City getCity(int id) {
+		return cities[id];
+	}
+
+	/**
+	 * Returns false for the states of a city with a task to itself, which
+	 * have neither actions nor probability
+	 */
+	public boolean exists(int state) {
+		return actionStart[state] != actionStart[state + 1];
+	}
+
+	/**
+	 * Returns the city the action goes to
+	 */
+	public int getActionCity(int action) {
+		return actionCity[action];
+	}
+
+	/**
+	 * Returns true if the action picks up the task of its state
+	 */
+	public boolean isPickup(int action) {
+		return actionPickup[action];
+	}
+
+	/**
+	 * Returns the probability of the state, 0 if it does not exist
+	 */
+	public double getProbability(int state) {
+		return probability[state];
+	}
+
+	/**
+	 * Returns the id of the state in city from with a task to city to,
+	 * or no task if to is cityNb
+	 */
+	public int stateOf(int from, int to) {
+		return from * (cityNb + 1) + to;
+	}
+
+	/**
+	 * Returns the reward of each action for a vehicle with the given cost
+	 * per km and capacity, including the cost of the action. Picking up a
+	 * task heavier than the capacity has a reward of minus infinity, so that
+	 * it is never chosen.
+	 */
+	public double[] rewards(int costPerKm, int capacity) {
+		double[] rewards = new double[actionCity.length];
+		for(int action = 0; action < rewards.length; ++action) {
+			if(actionPickup[action] && actionTaskWeight[action] > capacity)
+				rewards[action] = Double.NEGATIVE_INFINITY;
+			else
+				rewards[action] = actionTaskReward[action] - actionDistance[action] * costPerKm;
+		}
+		return rewards;
+	}
+
+	/**
+	 * Returns a 64 bit hash of everything the solution depends on: the
+	 * transitions of the model, the rewards of its actions, the discount
+	 * factor and the stop threshold
+	 */
+	public long fingerprint(double[] rewards, double discount, double threshold) {
+		long hash = mix(0, cityNb);
+		for(double p : probability)
+			hash = mix(hash, Double.doubleToLongBits(p));
+		for(int state = 0; state <= stateNb; ++state)
+			hash = mix(hash, actionStart[state]);
+		for(int action = 0; action < actionCity.length; ++action) {
+			hash = mix(hash, actionCity[action]);
+			hash = mix(hash, actionPickup[action] ? 1 : 0);
+			hash = mix(hash, Double.doubleToLongBits(rewards[action]));
+		}
+		hash = mix(hash, Double.doubleToLongBits(discount));
+		return mix(hash, Double.doubleToLongBits(threshold));
+	}
+
+	private static long mix(long hash, long value) {
+		// Multiply-xorshift step, as in SplitMix64
+		hash = (hash ^ value) * 0xbf58476d1ce4e5b9L;
+		return hash ^ (hash >>> 31);
+	}
+
+	/**
+	 * Runs value iteration in place until no value changes by more than the
+	 * threshold. Fills the value of each state and its best action (-1 for
+	 * the states that do not exist).
+	 *
+	 * The expected value of the states of a city does not depend on the
+	 * state updated, so it is computed once per city at the start of each
+	 * sweep and kept up to date when a value of the city changes. An action
+	 * then costs O(1) and a sweep O(S.A + S).
+	 * @return the number of sweeps
+	 */
+	public int valueIteration(double[] rewards, double discount, double threshold, double[] values, int[] policy) {
+		double[] cityValues = new double[cityNb];
+		int sweepNb = 0;
+		double residual;
+		do {
+			++sweepNb;
+			expectedCityValues(values, cityValues);
+			residual = improvementSweep(rewards, discount, values, cityValues, policy, null);
+		}while(residual > threshold);
+		return sweepNb;
+	}
+
+	/**
+	 * Runs modified policy iteration: each sweep that improves the policy, as
+	 * in valueIteration, is followed by up to evaluationSweeps sweeps that
+	 * only evaluate it, which are cheaper since they have a single action per
+	 * state. Stops when an improvement sweep changes no value by more than
+	 * the threshold.
+	 * @return the number of sweeps, improvement and evaluation
+	 */
+	public int policyIteration(double[] rewards, double discount, double threshold, int evaluationSweeps,
+			double[] values, int[] policy) {
+		double[] cityValues = new double[cityNb];
+		int[] policyActions = new int[stateNb];
+		int sweepNb = 0;
+		while(true) {
+			++sweepNb;
+			expectedCityValues(values, cityValues);
+			if(improvementSweep(rewards, discount, values, cityValues, policy, policyActions) <= threshold)
+				break;
+
+			for(int i = 0; i < evaluationSweeps; ++i) {
+				++sweepNb;
+				if(evaluationSweep(rewards, discount, values, cityValues, policyActions) <= threshold)
+					break;
+			}
+		}
+		return sweepNb;
+	}
+
+	/**
+	 * Runs prioritized sweeping: the states are backed up one at a time,
+	 * always the one whose value may change the most. The priority of a
+	 * state is a bound of its residual, the change of its value a backup
+	 * would make. When the value of a state changes by d, the expected value
+	 * of its city changes by p.d and the residual of the states with an
+	 * action to this city by at most discount.p.|d|. Stops when no residual
+	 * may be larger than the threshold.
+	 * @return the number of backups
+	 */
+	public int prioritizedSweeping(double[] rewards, double discount, double threshold, double[] values, int[] policy) {
+		// States with an action to each city, predecessorState[predecessorStart[c], predecessorStart[c + 1])
+		int[] predecessorStart = new int[cityNb + 1];
+		for(int action = 0; action < actionCity.length; ++action)
+			++predecessorStart[actionCity[action] + 1];
+		for(int city = 0; city < cityNb; ++city)
+			predecessorStart[city + 1] += predecessorStart[city];
+		int[] predecessorState = new int[actionCity.length];
+		int[] filled = new int[cityNb];
+		for(int state = 0; state < stateNb; ++state) {
+			for(int action = actionStart[state]; action < actionStart[state + 1]; ++action) {
+				int city = actionCity[action];
+				predecessorState[predecessorStart[city] + filled[city]++] = state;
+			}
+		}
+
+		double[] cityValues = new double[cityNb];
+		expectedCityValues(values, cityValues);
+		ResidualQueue queue = new ResidualQueue(stateNb);
+		for(int state = 0; state < stateNb; ++state) {
+			if(actionStart[state] == actionStart[state + 1]) {
+				policy[state] = -1;
+				continue;
+			}
+			int action = bestAction(state, rewards, discount, cityValues);
+			policy[state] = action;
+			queue.add(state, Math.abs(rewards[action] + discount * cityValues[actionCity[action]] - values[state]));
+		}
+
+		int backupNb = 0;
+		while(queue.getMaxPriority() > threshold) {
+			int state = queue.poll();
+			++backupNb;
+
+			int action = bestAction(state, rewards, discount, cityValues);
+			double score = rewards[action] + discount * cityValues[actionCity[action]];
+			double change = probability[state] * (score - values[state]);
+			values[state] = score;
+			policy[state] = action;
+
+			int city = state / (cityNb + 1);
+			cityValues[city] += change;
+			double bound = discount * Math.abs(change);
+			if(bound == 0)
+				continue;
+			for(int i = predecessorStart[city]; i < predecessorStart[city + 1]; ++i)
+				queue.add(predecessorState[i], bound);
+		}
+		return backupNb;
+	}
+
+	/**
+	 * Updates every state in place with its best action, keeping the
+	 * expected city values up to date. Fills the policy, and the best action
+	 * of each state if policyActions is not null.
+	 * @return the largest change of a value
+	 */
+	private double improvementSweep(double[] rewards, double discount, double[] values, double[] cityValues,
+			int[] policy, int[] policyActions) {
+		double residual = 0;
+		for(int state = 0; state < stateNb; ++state) {
+			if(actionStart[state] == actionStart[state + 1]) {
+				policy[state] = -1;
+				continue;
+			}
+
+			int bestAction = bestAction(state, rewards, discount, cityValues);
+			double bestScore = rewards[bestAction] + discount * cityValues[actionCity[bestAction]];
+			double change = bestScore - values[state];
+			residual = Math.max(residual, Math.abs(change));
+
+			// The next states see the new value, as in the sum over the states
+			cityValues[state / (cityNb + 1)] += probability[state] * change;
+			values[state] = bestScore;
+			policy[state] = bestAction;
+			if(policyActions != null)
+				policyActions[state] = bestAction;
+		}
+		return residual;
+	}
+
+	/**
+	 * Updates every state in place with the action of the policy, keeping
+	 * the expected city values up to date
+	 * @return the largest change of a value
+	 */
+	private double evaluationSweep(double[] rewards, double discount, double[] values, double[] cityValues,
+			int[] policyActions) {
+		double residual = 0;
+		for(int state = 0; state < stateNb; ++state) {
+			if(actionStart[state] == actionStart[state + 1])
+				continue;
+
+			int action = policyActions[state];
+			double change = rewards[action] + discount * cityValues[actionCity[action]] - values[state];
+			residual = Math.max(residual, Math.abs(change));
+			cityValues[state / (cityNb + 1)] += probability[state] * change;
+			values[state] += change;
+		}
+		return residual;
+	}
+
+	/**
+	 * Returns the action of the state with the best score for the given
+	 * expected city values, the first one on ties
+	 */
+	private int bestAction(int state, double[] rewards, double discount, double[] cityValues) {
+		double bestScore = 0;
+		int bestAction = -1;
+		for(int action = actionStart[state]; action < actionStart[state + 1]; ++action) {
+			double score = rewards[action] + discount * cityValues[actionCity[action]];
+			if(bestAction == -1 || score > bestScore) {
+				bestScore = score;
+				bestAction = action;
+			}
+		}
+		return bestAction;
+	}
+
+	/**
+	 * Computes the expected total reward of the next horizon actions from
+	 * each state, without discount, and the first of these actions. Each of
+	 * the horizon steps is a synchronous backup of the values of the
+	 * previous one, starting from 0.
+	 */
+	public void lookahead(double[] rewards, int horizon, double[] values, int[] policy) {
+		double[] previousValues = new double[stateNb];
+		double[] cityValues = new double[cityNb];
+		for(int step = 0; step < horizon; ++step) {
+			expectedCityValues(previousValues, cityValues);
+			for(int state = 0; state < stateNb; ++state) {
+				if(actionStart[state] == actionStart[state + 1]) {
+					policy[state] = -1;
+					values[state] = 0;
+					continue;
+				}
+
+				int action = bestAction(state, rewards, 1, cityValues);
+				values[state] = rewards[action] + cityValues[actionCity[action]];
+				policy[state] = action;
+			}
+			System.arraycopy(values, 0, previousValues, 0, stateNb);
+		}
+	}
+
+	/**
+	 * Runs synchronous (Jacobi) value iteration on the pool until no value
+	 * changes by more than the threshold. Each sweep reads the values of the
+	 * previous one and writes the other buffer, so the cities can be updated
+	 * in parallel, and returns the largest change of a value. The result is
+	 * the one of valueIteration within the threshold.
+	 * @return the number of sweeps
+	 */
+	public int parallelValueIteration(double[] rewards, double discount, double threshold, double[] values, int[] policy,
+			ForkJoinPool pool) {
+		double[] currentValues = values;
+		double[] nextValues = new double[stateNb];
+		double[] cityValues = new double[cityNb];
+		double[] nextCityValues = new double[cityNb];
+		expectedCityValues(values, cityValues);
+
+		// About four tasks per thread, so that the threads stay busy
+		int grain = Math.max(1, cityNb / (4 * pool.getParallelism()));
+		int sweepNb = 0;
+		double residual;
+		do {
+			++sweepNb;
+			residual = pool.invoke(new SweepTask(0, cityNb, grain, rewards, discount, currentValues, cityValues,
+					nextValues, nextCityValues, policy));
+
+			double[] swap = currentValues;
+			currentValues = nextValues;
+			nextValues = swap;
+			swap = cityValues;
+			cityValues = nextCityValues;
+			nextCityValues = swap;
+		}while(residual > threshold);
+
+		if(currentValues != values)
+			System.arraycopy(currentValues, 0, values, 0, stateNb);
+		return sweepNb;
+	}
+
+	/**
+	 * Task of a parallel sweep that updates the states of the cities in
+	 * [firstCity, endCity), splitting the range while it is larger than
+	 * grain. Returns the largest change of a value.
+	 */
+	private class SweepTask extends RecursiveTask<Double> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int firstCity;
+		private final int endCity;
+		private final int grain;
+		private final double[] rewards;
+		private final double discount;
+		private final double[] values;
+		private final double[] cityValues;
+		private final double[] nextValues;
+		private final double[] nextCityValues;
+		private final int[] policy;
+
+		SweepTask(int firstCity, int endCity, int grain, double[] rewards, double discount, double[] values,
+				double[] cityValues, double[] nextValues, double[] nextCityValues, int[] policy) {
+			this.firstCity = firstCity;
+			this.endCity = endCity;
+			this.grain = grain;
+			this.rewards = rewards;
+			this.discount = discount;
+			this.values = values;
+			this.cityValues = cityValues;
+			this.nextValues = nextValues;
+			this.nextCityValues = nextCityValues;
+			this.policy = policy;
+		}
+
+		@Override
+		protected Double compute() {
+			if(endCity - firstCity > grain) {
+				int middle = (firstCity + endCity) >>> 1;
+				SweepTask left = new SweepTask(firstCity, middle, grain, rewards, discount, values, cityValues,
+						nextValues, nextCityValues, policy);
+				SweepTask right = new SweepTask(middle, endCity, grain, rewards, discount, values, cityValues,
+						nextValues, nextCityValues, policy);
+				left.fork();
+				double rightResidual = right.compute();
+				return Math.max(left.join(), rightResidual);
+			}
+
+			double residual = 0;
+			int rowLength = cityNb + 1;
+			for(int city = firstCity; city < endCity; ++city) {
+				double expectedValue = 0;
+				for(int state = city * rowLength; state < (city + 1) * rowLength; ++state) {
+					if(actionStart[state] == actionStart[state + 1]) {
+						policy[state] = -1;
+						nextValues[state] = values[state];
+						continue;
+					}
+
+					int bestAction = bestAction(state, rewards, discount, cityValues);
+					double bestScore = rewards[bestAction] + discount * cityValues[actionCity[bestAction]];
+					residual = Math.max(residual, Math.abs(bestScore - values[state]));
+					nextValues[state] = bestScore;
+					policy[state] = bestAction;
+					expectedValue += probability[state] * bestScore;
+				}
+				nextCityValues[city] = expectedValue;
+			}
+			return residual;
+		}
+	}
+
+	/**
+	 * Fills the expected value of the states of each city, weighted by
+	 * their probability
+	 */
+	public void expectedCityValues(double[] values, double[] cityValues) {
+		int rowLength = cityNb + 1;
+		for(int city = 0; city < cityNb; ++city) {
+			double expectedValue = 0;
+			for(int state = city * rowLength; state < (city + 1) * rowLength; ++state)
+				expectedValue += probability[state] * values[state];
+			cityValues[city] = expectedValue;
+		}
+	}
+}
@@ -0,0 +1,97 @@
+import java.util.Arrays;
+
+/**
+ * Indexed max-heap of the states of prioritized sweeping. A state is at
+ * most once in the queue and adding it again increases its priority.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class ResidualQueue {
+
+	private final int[] heap;
+	private final int[] position; // Index of each state in heap, -1 if not queued
+	private final double[] priority;
+	private int size = 0;
+
+	public ResidualQueue(int stateNb) {
+		heap = new int[stateNb];
+		position = new int[stateNb];
+		priority = new double[stateNb];
+		Arrays.fill(position, -1);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the highest priority, 0 if the queue is empty
+	 */
+	public double getMaxPriority() {
+		return size == 0 ? 0 : priority[heap[0]];
+	}
+
+	/**
+	 * Queues the state with the given priority, or increases its priority
+	 * by it if it is already queued
+	 */
+	public void add(int state, double increase) {
+		if(position[state] == -1) {
+			priority[state] = increase;
+			heap[size] = state;
+			position[state] = size;
+			++size;
+		}else {
+			priority[state] += increase;
+		}
+		siftUp(position[state]);
+	}
+
+	/**
+	 * Removes and returns the state with the highest priority
+	 */
+	public int poll() {
+		int state = heap[0];
+		--size;
+		if(size > 0) {
+			move(heap[size], 0);
+			siftDown(0);
+		}
+		position[state] = -1;
+		priority[state] = 0;
+		return state;
+	}
+
+	private void siftUp(int index) {
+		int state = heap[index];
+		while(index > 0) {
+			int parent = (index - 1) >>> 1;
+			if(priority[heap[parent]] >= priority[state])
+				break;
+			move(heap[parent], index);
+			index = parent;
+		}
+		move(state, index);
+	}
+
+	private void siftDown(int index) {
+		int state = heap[index];
+		while(true) {
+			int child = 2 * index + 1;
+			if(child >= size)
+				break;
+			if(child + 1 < size && priority[heap[child + 1]] > priority[heap[child]])
+				++child;
+			if(priority[heap[child]] <= priority[state])
+				break;
+			move(heap[child], index);
+			index = child;
+		}
+		move(state, index);
+	}
+
+	private void move(int state, int index) {
+		heap[index] = state;
+		position[state] = index;
+	}
+}
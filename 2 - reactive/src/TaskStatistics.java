@@ -0,0 +1,59 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts of the states of a ReactiveModel seen by the reactive agent, a
+ * city with a task to another city or with no task, from which the task
+ * probabilities are estimated.
+ *
+ * The counts are written by the threads that call act(), one at a time but
+ * not always the same one (logist runs act() on the pool threads of its
+ * TimeoutGuard), and read by the thread that estimates the probabilities,
+ * so they are atomic.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class TaskStatistics {
+
+	private final ReactiveModel model;
+	private final AtomicIntegerArray counts;
+	private final AtomicLong observationNb = new AtomicLong();
+
+	public TaskStatistics(ReactiveModel model) {
+		this.model = model;
+		counts = new AtomicIntegerArray(model.getStateNb());
+	}
+
+	/**
+	 * Counts one observation of the state
+	 * @return the number of observations so far
+	 */
+	public long observe(int state) {
+		counts.getAndIncrement(state);
+		return observationNb.incrementAndGet();
+	}
+
+	/**
+	 * Returns the probability of each state of the model, estimated as the
+	 * frequency of the state in its city with the probability of the model
+	 * counted as priorWeight observations
+	 */
+	public double[] estimate(double priorWeight) {
+		int rowLength = model.getCityNb() + 1;
+		double[] probability = new double[model.getStateNb()];
+		for(int city = 0; city < model.getCityNb(); ++city) {
+			int first = city * rowLength;
+			long total = 0;
+			for(int state = first; state < first + rowLength; ++state) {
+				if(model.exists(state))
+					total += counts.get(state);
+			}
+
+			for(int state = first; state < first + rowLength; ++state) {
+				if(model.exists(state))
+					probability[state] = (priorWeight * model.getProbability(state) + counts.get(state)) / (priorWeight + total);
+			}
+		}
+		return probability;
+	}
+}
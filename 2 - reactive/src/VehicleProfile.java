@@ -0,0 +1,56 @@
+import logist.agent.Agent;
+import logist.simulation.Vehicle;
+
+/**
+ * The characteristics of a vehicle its reactive policy depends on, its cost
+ * per km and its capacity. Only the vehicle that the platform drives needs
+ * a policy, see drivenVehicle.
+ * @author Piccione Andrea, Juppet Quentin
+ */
+
+public class VehicleProfile {
+	private final int costPerKm;
+	private final int capacity;
+
+	public VehicleProfile(Vehicle vehicle) {
+		this.costPerKm = vehicle.costPerKm();
+		this.capacity = vehicle.capacity();
+	}
+
+	/**
+	 * Returns the vehicle of the agent that logist drives in the reactive
+	 * mode, the first one: the controller gives no action to the others
+	 */
+	public static Vehicle drivenVehicle(Agent agent) {
+		return agent.vehicles().get(0);
+	}
+
+	public int getCostPerKm() {
+		return costPerKm;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * costPerKm + capacity;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (!(obj instanceof VehicleProfile)) {
+			return false;
+		}
+
+		VehicleProfile other = (VehicleProfile) obj;
+		return other.costPerKm == costPerKm && other.capacity == capacity;
+	}
+
+	@Override
+	public String toString() {
+		return costPerKm + "/km, capacity " + capacity;
+	}
+}